@@ -0,0 +1,570 @@
+package GameEngine;
+
+/**
+ * A broadphase for collision detection that keeps the collidable objects in a balanced tree of axis-aligned bounding boxes (a dynamic
+ * AABB tree). Unlike a SpatialHash it is not rebuilt every game tick and it copes well with objects of very different sizes.
+ * <p>
+ * Each object is kept in the tree with a "fat" box, its bounding box grown by a margin on every side. While the object stays inside
+ * its fat box the tree is left alone, only when it moves out is it taken out and put back in. Objects added with addStatic() (walls,
+ * buildings etc) are never checked for movement and are never compared with each other, so they cost nothing per game tick.
+ * <p>
+ * Call findPairs() once per game tick, after the objects have moved, to be given every pair of objects whose bounding boxes overlap
+ * or touch. The collision filters (see GameObject.setCollisionFilter()) and collidable flags are checked before the objects' own
+ * bounding boxes are compared. Each pair is given once, with the object that was added to the tree first as the first object, and the pairs always come
+ * in the same order for the same objects. Fast objects (see GameObject.setContinuousCollision()) use the box they swept through
+ * during the tick instead of their bounding box.
+ * <p>
+ * An object can only be in one tree at a time. Objects removed from a GameWorld by GameWorld.removeDestroyed() are taken out of their
+ * tree automatically. If a static object is moved, call refresh() for it. Objects must not be added or removed from within the
+ * listener given to findPairs().
+ * <p>
+ * E.g:<p>
+ * <code> AABBTree broadphase = new AABBTree(8);</code><p>
+ * <code> broadphase.addStatic(wall);</code><p>
+ * <code> broadphase.add(player);</code><p>
+ * <code> ...</code><p>
+ * <code> broadphase.findPairs(collisionListener);</code><p>
+ *
+ * @see GameCollisionListener
+ * @see SpatialHash
+ */
+public class AABBTree implements GameBroadphase
+{
+	private static final int NULL = -1;
+	
+	private float margin;
+	
+	// The nodes, leaves hold an object and branches hold the union of their two children's boxes
+	private float [] minX, minY, maxX, maxY;
+	private int [] parent, child1, child2, height;
+	private GameObject [] object;
+	private boolean [] isStatic;
+	private int [] sequence;
+	private int [] leafIndex;
+	private int root = NULL;
+	private int freeList = NULL;
+	private int nextSequence = 0;
+	
+	// The leaves, in the order they were added (apart from removals, which move the last leaf into the gap)
+	private int [] leaves = new int [64];
+	private int leafCount = 0;
+	
+	// Reused for walking the tree
+	private int [] stack = new int [64];
+	
+	// Statistics
+	private int reinserts = 0;
+	
+	//==============================================================================
+	
+	/**
+	 * Constructor
+	 *
+	 * @param margin How far (in pixels) an object can move before it has to be moved in the tree. Larger margins mean fewer moves
+	 * but more pairs of boxes to compare
+	 */
+	public AABBTree(float margin)
+	{
+		this.margin = Math.max(0.0f, margin);
+		allocate(64);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Adds an object that moves
+	 *
+	 * @param o The object, which must not be in a tree already
+	 */
+	public void add(GameObject o)
+	{
+		addLeaf(o, false);
+	}
+	
+	/**
+	 * Adds an object that does not move. Static objects are never compared with each other
+	 *
+	 * @param o The object, which must not be in a tree already
+	 */
+	public void addStatic(GameObject o)
+	{
+		addLeaf(o, true);
+	}
+	
+	private void addLeaf(GameObject o, boolean stat)
+	{
+		if (o.tree != null)
+			throw new IllegalStateException("The object is already in an AABBTree");
+		
+		int leaf = allocateNode();
+		object[leaf] = o;
+		isStatic[leaf] = stat;
+		sequence[leaf] = nextSequence++;
+		fatten(leaf);
+		insertLeaf(leaf);
+		
+		if (leafCount == leaves.length)
+			leaves = grow(leaves, leafCount * 2);
+		leafIndex[leaf] = leafCount;
+		leaves[leafCount++] = leaf;
+		
+		o.tree = this;
+		o.treeProxy = leaf;
+	}
+	
+	/**
+	 * Removes an object from the tree
+	 *
+	 * @param o The object, which must be in this tree
+	 */
+	public void remove(GameObject o)
+	{
+		if (o.tree != this)
+			throw new IllegalArgumentException("The object is not in this tree");
+		
+		int leaf = o.treeProxy;
+		removeLeaf(leaf);
+		
+		int i = leafIndex[leaf];
+		int last = leaves[--leafCount];
+		leaves[i] = last;
+		leafIndex[last] = i;
+		
+		freeNode(leaf);
+		o.tree = null;
+		o.treeProxy = NULL;
+	}
+	
+	/**
+	 * Puts an object back into the tree at its current position. Only needed for static objects that have been moved
+	 *
+	 * @param o The object, which must be in this tree
+	 */
+	public void refresh(GameObject o)
+	{
+		if (o.tree != this)
+			throw new IllegalArgumentException("The object is not in this tree");
+		
+		int leaf = o.treeProxy;
+		removeLeaf(leaf);
+		fatten(leaf);
+		insertLeaf(leaf);
+		reinserts++;
+	}
+	
+	/**
+	 * Returns the number of objects in the tree
+	 *
+	 * @return The number of objects
+	 */
+	public int size()
+	{
+		return(leafCount);
+	}
+	
+	/**
+	 * Returns the height of the tree, for debugging. A balanced tree of n objects is about log2(n) high
+	 *
+	 * @return The height of the tree, 0 if it is empty
+	 */
+	public int getHeight()
+	{
+		return(root == NULL ? 0 : height[root] + 1);
+	}
+	
+	/**
+	 * Returns how many times an object was moved in the tree because it left its fat box, since the tree was created
+	 *
+	 * @return The number of moves
+	 */
+	public int getReinsertCount()
+	{
+		return(reinserts);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Moves the objects that have left their fat boxes and then finds every pair of objects whose bounding boxes overlap or touch
+	 *
+	 * @param listener Given each pair
+	 * @return The number of pairs found
+	 */
+	public int findPairs(GameCollisionListener listener)
+	{
+		update();
+		
+		int pairs = 0;
+		for (int l = 0 ; l < leafCount ; l++)
+		{
+			int a = leaves[l];
+			GameObject oa = object[a];
+			if (isStatic[a] || !oa.getCollidable() || oa.getCollisionMask() == 0)
+				continue;
+			
+			float ax0 = oa.getSweptMinX(), ay0 = oa.getSweptMinY();
+			float ax1 = oa.getSweptMaxX(), ay1 = oa.getSweptMaxY();
+			
+			int top = 0;
+			stack[top++] = root;
+			while (top > 0)
+			{
+				int n = stack[--top];
+				if (minX[n] > ax1 || ax0 > maxX[n] || minY[n] > ay1 || ay0 > maxY[n])
+					continue;
+				
+				if (child1[n] != NULL)
+				{
+					if (top + 2 > stack.length)
+						stack = grow(stack, stack.length * 2);
+					stack[top++] = child1[n];
+					stack[top++] = child2[n];
+					continue;
+				}
+				
+				// Each pair of moving objects is found from both ends, keep the one found from the object added first
+				if (n == a || (!isStatic[n] && sequence[n] < sequence[a]))
+					continue;
+				
+				GameObject ob = object[n];
+				if (!oa.canCollideWith(ob) || !ob.getCollidable())
+					continue;
+				
+				if (ob.getSweptMinX() > ax1 || ax0 > ob.getSweptMaxX() || ob.getSweptMinY() > ay1 || ay0 > ob.getSweptMaxY())
+					continue;
+				
+				if (sequence[n] < sequence[a])
+					listener.collision(ob, oa);
+				else
+					listener.collision(oa, ob);
+				pairs++;
+				
+				// The listener may have made this object not collidable
+				if (!oa.getCollidable())
+					break;
+			}
+		}
+		return(pairs);
+	}
+	
+	/**
+	 * Moves every moving object that has left its fat box
+	 */
+	private void update()
+	{
+		for (int l = 0 ; l < leafCount ; l++)
+		{
+			int leaf = leaves[l];
+			if (isStatic[leaf])
+				continue;
+			
+			GameObject o = object[leaf];
+			if (o.getSweptMinX() < minX[leaf] || o.getSweptMinY() < minY[leaf] || o.getSweptMaxX() > maxX[leaf] || o.getSweptMaxY() > maxY[leaf])
+			{
+				removeLeaf(leaf);
+				fatten(leaf);
+				insertLeaf(leaf);
+				reinserts++;
+			}
+		}
+	}
+	
+	/**
+	 * Sets a leaf's box to its object's bounding box (swept, for fast objects) grown by the margin
+	 */
+	private void fatten(int leaf)
+	{
+		GameObject o = object[leaf];
+		minX[leaf] = o.getSweptMinX() - margin;
+		minY[leaf] = o.getSweptMinY() - margin;
+		maxX[leaf] = o.getSweptMaxX() + margin;
+		maxY[leaf] = o.getSweptMaxY() + margin;
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Inserts a leaf next to the node that grows the tree's boxes the least
+	 */
+	private void insertLeaf(int leaf)
+	{
+		if (root == NULL)
+		{
+			root = leaf;
+			parent[leaf] = NULL;
+			return;
+		}
+		
+		// Walk down to the best sibling
+		int index = root;
+		while (child1[index] != NULL)
+		{
+			int c1 = child1[index], c2 = child2[index];
+			
+			float area = perimeter(index);
+			float combined = unionPerimeter(index, leaf);
+			
+			// The cost of making a new parent for this node and the leaf, and the cost of pushing the leaf further down
+			float cost = 2.0f * combined;
+			float inheritance = 2.0f * (combined - area);
+			float cost1 = descendCost(c1, leaf) + inheritance;
+			float cost2 = descendCost(c2, leaf) + inheritance;
+			
+			if (cost < cost1 && cost < cost2)
+				break;
+			index = (cost1 < cost2) ? c1 : c2;
+		}
+		int sibling = index;
+		
+		// Make a new parent for the sibling and the leaf
+		int oldParent = parent[sibling];
+		int newParent = allocateNode();
+		parent[newParent] = oldParent;
+		object[newParent] = null;
+		setUnion(newParent, sibling, leaf);
+		height[newParent] = height[sibling] + 1;
+		
+		if (oldParent != NULL)
+		{
+			if (child1[oldParent] == sibling)
+				child1[oldParent] = newParent;
+			else
+				child2[oldParent] = newParent;
+		}
+		else
+		{
+			root = newParent;
+		}
+		child1[newParent] = sibling;
+		child2[newParent] = leaf;
+		parent[sibling] = newParent;
+		parent[leaf] = newParent;
+		
+		refit(parent[leaf]);
+	}
+	
+	/**
+	 * Takes a leaf out of the tree (the node itself is kept)
+	 */
+	private void removeLeaf(int leaf)
+	{
+		if (leaf == root)
+		{
+			root = NULL;
+			return;
+		}
+		
+		int p = parent[leaf];
+		int grandParent = parent[p];
+		int sibling = (child1[p] == leaf) ? child2[p] : child1[p];
+		
+		if (grandParent != NULL)
+		{
+			if (child1[grandParent] == p)
+				child1[grandParent] = sibling;
+			else
+				child2[grandParent] = sibling;
+			parent[sibling] = grandParent;
+			freeNode(p);
+			refit(grandParent);
+		}
+		else
+		{
+			root = sibling;
+			parent[sibling] = NULL;
+			freeNode(p);
+		}
+	}
+	
+	/**
+	 * Rebalances and recomputes the boxes and heights from a node up to the root
+	 */
+	private void refit(int index)
+	{
+		while (index != NULL)
+		{
+			index = balance(index);
+			int c1 = child1[index], c2 = child2[index];
+			height[index] = 1 + Math.max(height[c1], height[c2]);
+			setUnion(index, c1, c2);
+			index = parent[index];
+		}
+	}
+	
+	/**
+	 * Rotates a node's taller grandchild up if its children's heights differ by more than one
+	 *
+	 * @return The node now in the given node's place
+	 */
+	private int balance(int a)
+	{
+		if (child1[a] == NULL || height[a] < 2)
+			return(a);
+		
+		int b = child1[a], c = child2[a];
+		int diff = height[c] - height[b];
+		
+		if (diff > 1)
+		{
+			rotateUp(a, c, b, false);
+			return(c);
+		}
+		if (diff < -1)
+		{
+			rotateUp(a, b, c, true);
+			return(b);
+		}
+		return(a);
+	}
+	
+	/**
+	 * Moves the child up into the node's place, the node keeps the other child and the child's shorter child
+	 *
+	 * @param a The unbalanced node
+	 * @param up The taller child of a, which takes a's place
+	 * @param other The shorter child of a
+	 * @param upIsFirst True if up is child1 of a
+	 */
+	private void rotateUp(int a, int up, int other, boolean upIsFirst)
+	{
+		int f = child1[up], g = child2[up];
+		
+		child1[up] = a;
+		parent[up] = parent[a];
+		parent[a] = up;
+		
+		if (parent[up] != NULL)
+		{
+			if (child1[parent[up]] == a)
+				child1[parent[up]] = up;
+			else
+				child2[parent[up]] = up;
+		}
+		else
+		{
+			root = up;
+		}
+		
+		// The taller of up's children stays with up, the shorter one moves to a
+		int keep = (height[f] > height[g]) ? f : g;
+		int move = (keep == f) ? g : f;
+		child2[up] = keep;
+		if (upIsFirst)
+			child1[a] = move;
+		else
+			child2[a] = move;
+		parent[move] = a;
+		
+		setUnion(a, other, move);
+		height[a] = 1 + Math.max(height[other], height[move]);
+		setUnion(up, a, keep);
+		height[up] = 1 + Math.max(height[a], height[keep]);
+	}
+	
+	//==============================================================================
+	
+	private float perimeter(int n)
+	{
+		return(2.0f * ((maxX[n] - minX[n]) + (maxY[n] - minY[n])));
+	}
+	
+	private float unionPerimeter(int a, int b)
+	{
+		float w = Math.max(maxX[a], maxX[b]) - Math.min(minX[a], minX[b]);
+		float h = Math.max(maxY[a], maxY[b]) - Math.min(minY[a], minY[b]);
+		return(2.0f * (w + h));
+	}
+	
+	/**
+	 * Returns the cost of putting the leaf below the node
+	 */
+	private float descendCost(int n, int leaf)
+	{
+		if (child1[n] == NULL)
+			return(unionPerimeter(n, leaf));
+		return(unionPerimeter(n, leaf) - perimeter(n));
+	}
+	
+	private void setUnion(int n, int a, int b)
+	{
+		minX[n] = Math.min(minX[a], minX[b]);
+		minY[n] = Math.min(minY[a], minY[b]);
+		maxX[n] = Math.max(maxX[a], maxX[b]);
+		maxY[n] = Math.max(maxY[a], maxY[b]);
+	}
+	
+	//==============================================================================
+	
+	private int allocateNode()
+	{
+		if (freeList == NULL)
+			allocate(object.length * 2);
+		
+		int n = freeList;
+		freeList = parent[n];
+		parent[n] = NULL;
+		child1[n] = NULL;
+		child2[n] = NULL;
+		height[n] = 0;
+		return(n);
+	}
+	
+	private void freeNode(int n)
+	{
+		object[n] = null;
+		parent[n] = freeList;
+		height[n] = -1;
+		freeList = n;
+	}
+	
+	/**
+	 * Creates (or grows) the node arrays, putting the new nodes on the free list
+	 */
+	private void allocate(int n)
+	{
+		int old = (object == null) ? 0 : object.length;
+		minX = grow(minX, n);
+		minY = grow(minY, n);
+		maxX = grow(maxX, n);
+		maxY = grow(maxY, n);
+		parent = grow(parent, n);
+		child1 = grow(child1, n);
+		child2 = grow(child2, n);
+		height = grow(height, n);
+		sequence = grow(sequence, n);
+		leafIndex = grow(leafIndex, n);
+		
+		boolean [] s = new boolean [n];
+		GameObject [] o = new GameObject [n];
+		if (old > 0)
+		{
+			System.arraycopy(isStatic, 0, s, 0, old);
+			System.arraycopy(object, 0, o, 0, old);
+		}
+		isStatic = s;
+		object = o;
+		
+		for (int i = n - 1 ; i >= old ; i--)
+		{
+			parent[i] = freeList;
+			height[i] = -1;
+			freeList = i;
+		}
+	}
+	
+	private static int [] grow(int [] a, int n)
+	{
+		int [] b = new int [n];
+		if (a != null)
+			System.arraycopy(a, 0, b, 0, a.length);
+		return(b);
+	}
+	
+	private static float [] grow(float [] a, int n)
+	{
+		float [] b = new float [n];
+		if (a != null)
+			System.arraycopy(a, 0, b, 0, a.length);
+		return(b);
+	}
+}
@@ -0,0 +1,157 @@
+package GameEngine;
+
+import java.nio.*;
+
+/**
+ * A 1-bit-per-pixel copy of the alpha channel of a texture (or of one frame of a sprite sheet), used for pixel perfect collision
+ * detection. A pixel is solid if its alpha is not 0.
+ * <p>
+ * The bits are packed 64 pixels to a long, one row after another, so two masks are compared 64 pixels at a time by shifting and
+ * ANDing whole words (see overlaps()) instead of reading the RGBA bytes of both textures pixel by pixel. Like the texture's byte
+ * buffer, row 0 is the bottom row of the image. Bit 0 of each row's first word is the leftmost pixel.
+ * <p>
+ * Masks are made by GameTexture when the texture is loaded, see GameTexture.getAlphaMask() and GameObject.getAlphaMask().
+ *
+ * @see PixelCollision
+ */
+public final class AlphaMask
+{
+	private final int width;
+	private final int height;
+	private final int words; // Per row
+	private final long [] bits;
+	
+	//==============================================================================
+	
+	/**
+	 * Builds a mask that is solid everywhere, for textures without pixel data
+	 *
+	 * @param width The width of the mask
+	 * @param height The height of the mask
+	 */
+	AlphaMask(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		words = (width + 63) >>> 6;
+		bits = new long [words * height];
+		
+		for (int row = 0 ; row < height ; row++)
+			for (int col = 0 ; col < width ; col++)
+				bits[row * words + (col >>> 6)] |= 1L << col;
+	}
+	
+	/**
+	 * Builds the mask of part of an RGBA byte buffer
+	 *
+	 * @param buffer The texture's pixel data, RGBA starting at the bottom left corner
+	 * @param bufferWidth The width of the whole texture
+	 * @param x The left edge of the part to build the mask of
+	 * @param y The bottom edge of the part to build the mask of
+	 * @param width The width of the part
+	 * @param height The height of the part
+	 */
+	AlphaMask(ByteBuffer buffer, int bufferWidth, int x, int y, int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		words = (width + 63) >>> 6;
+		bits = new long [words * height];
+		
+		for (int row = 0 ; row < height ; row++)
+		{
+			int index = ((y + row) * bufferWidth + x) * 4 + 3;
+			int base = row * words;
+			for (int col = 0 ; col < width ; col++, index += 4)
+				if (buffer.get(index) != 0)
+					bits[base + (col >>> 6)] |= 1L << col;
+		}
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns the width of the mask
+	 *
+	 * @return The width in pixels
+	 */
+	public int getWidth()
+	{
+		return(width);
+	}
+	
+	/**
+	 * Returns the height of the mask
+	 *
+	 * @return The height in pixels
+	 */
+	public int getHeight()
+	{
+		return(height);
+	}
+	
+	/**
+	 * Returns whether a pixel is solid (its alpha is not 0)
+	 *
+	 * @param x The x-coordinate of the pixel, from the left edge
+	 * @param y The y-coordinate of the pixel, from the bottom edge
+	 * @return True if the pixel is solid, false if it is see-through or outside the mask
+	 */
+	public boolean isSolid(int x, int y)
+	{
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return(false);
+		return((bits[y * words + (x >>> 6)] & (1L << x)) != 0);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Tests whether any solid pixel of one mask lies on a solid pixel of another, with the masks placed at the given positions
+	 *
+	 * @param a The first mask
+	 * @param ax The x-coordinate of the first mask's left edge
+	 * @param ay The y-coordinate of the first mask's bottom edge
+	 * @param b The second mask
+	 * @param bx The x-coordinate of the second mask's left edge
+	 * @param by The y-coordinate of the second mask's bottom edge
+	 * @return True if the masks overlap
+	 */
+	public static boolean overlaps(AlphaMask a, int ax, int ay, AlphaMask b, int bx, int by)
+	{
+		int x0 = Math.max(ax, bx), x1 = Math.min(ax + a.width, bx + b.width);
+		int y0 = Math.max(ay, by), y1 = Math.min(ay + a.height, by + b.height);
+		if (x0 >= x1 || y0 >= y1)
+			return(false);
+		
+		for (int y = y0 ; y < y1 ; y++)
+		{
+			int rowA = (y - ay) * a.words, rowB = (y - by) * b.words;
+			for (int x = x0 ; x < x1 ; x += 64)
+			{
+				long overlap = a.word(rowA, x - ax) & b.word(rowB, x - bx);
+				
+				// The last word of the row may reach past the overlap
+				int n = x1 - x;
+				if (n < 64)
+					overlap &= (1L << n) - 1;
+				
+				if (overlap != 0)
+					return(true);
+			}
+		}
+		return(false);
+	}
+	
+	/**
+	 * Returns the 64 pixels of a row starting at any pixel, shifting the two words they fall in together
+	 */
+	private long word(int row, int x)
+	{
+		int i = x >>> 6, shift = x & 63;
+		long w = bits[row + i] >>> shift;
+		if (shift != 0 && i + 1 < words)
+			w |= bits[row + i + 1] << (64 - shift);
+		return(w);
+	}
+}
@@ -0,0 +1,172 @@
+package GameEngine;
+
+/**
+ * Packs rectangles into a page of a texture atlas (see ResourceLoader.loadTextures()).
+ * <p>
+ * The packer keeps the skyline of the page, the top edge of everything placed so far as a list of flat segments from left to
+ * right. Each rectangle is placed where its bottom edge ends up lowest on the skyline (and on the narrowest segment if there is a
+ * tie), which fills the page from the top down, row by row, with little wasted space when the rectangles are sorted tallest first.
+ * <p>
+ * Positions are measured from the top left corner of the page, as in a BufferedImage.
+ */
+class AtlasPacker
+{
+	private final int width;
+	private final int height;
+	
+	// The skyline, segment i runs from segX[i] to segX[i] + segW[i] with its top at segY[i]
+	private int [] segX;
+	private int [] segY;
+	private int [] segW;
+	private int segments;
+	
+	private int usedHeight = 0;
+	
+	//==============================================================================
+	
+	/**
+	 * Constructor
+	 *
+	 * @param width The width of the page
+	 * @param height The height of the page
+	 */
+	AtlasPacker(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		segX = new int [16];
+		segY = new int [16];
+		segW = new int [16];
+		segW[0] = width;
+		segments = 1;
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Finds room for a rectangle and marks it as used
+	 *
+	 * @param w The width of the rectangle
+	 * @param h The height of the rectangle
+	 * @param pos Receives the x and y-coordinates of the rectangle's top left corner
+	 * @return True if the rectangle was placed, false if the page has no room left for it
+	 */
+	boolean pack(int w, int h, int [] pos)
+	{
+		int best = -1, bestY = Integer.MAX_VALUE, bestW = Integer.MAX_VALUE;
+		for (int i = 0 ; i < segments ; i++)
+		{
+			int y = fit(i, w, h);
+			if (y >= 0 && (y + h < bestY || (y + h == bestY && segW[i] < bestW)))
+			{
+				best = i;
+				bestY = y + h;
+				bestW = segW[i];
+			}
+		}
+		if (best < 0)
+			return(false);
+		
+		pos[0] = segX[best];
+		pos[1] = bestY - h;
+		addSegment(best, pos[0], bestY, w);
+		usedHeight = Math.max(usedHeight, bestY);
+		return(true);
+	}
+	
+	/**
+	 * Returns how far down the page has been filled
+	 *
+	 * @return The lowest edge of any rectangle placed so far
+	 */
+	int getUsedHeight()
+	{
+		return(usedHeight);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Works out where a rectangle would rest with its left edge at the start of a segment
+	 *
+	 * @return The y-coordinate of the rectangle's top edge, or -1 if it does not fit there
+	 */
+	private int fit(int i, int w, int h)
+	{
+		if (segX[i] + w > width)
+			return(-1);
+		
+		// The rectangle rests on the highest segment it spans
+		int y = 0, left = w;
+		for ( ; left > 0 ; i++)
+		{
+			y = Math.max(y, segY[i]);
+			if (y + h > height)
+				return(-1);
+			left -= segW[i];
+		}
+		return(y);
+	}
+	
+	/**
+	 * Puts a new segment into the skyline at index i, cutting back the segments it covers and merging it with neighbours at the same height
+	 */
+	private void addSegment(int i, int x, int y, int w)
+	{
+		if (segments == segX.length)
+		{
+			segX = grow(segX);
+			segY = grow(segY);
+			segW = grow(segW);
+		}
+		System.arraycopy(segX, i, segX, i + 1, segments - i);
+		System.arraycopy(segY, i, segY, i + 1, segments - i);
+		System.arraycopy(segW, i, segW, i + 1, segments - i);
+		segX[i] = x;
+		segY[i] = y;
+		segW[i] = w;
+		segments++;
+		
+		// Cut back or remove the segments now under the new one
+		int end = x + w;
+		int j = i + 1;
+		while (j < segments && segX[j] < end)
+		{
+			int overlap = end - segX[j];
+			if (overlap < segW[j])
+			{
+				segX[j] += overlap;
+				segW[j] -= overlap;
+				break;
+			}
+			remove(j);
+		}
+		
+		// Neighbours at the same height become one segment
+		for (j = 0 ; j < segments - 1 ; )
+		{
+			if (segY[j] == segY[j + 1])
+			{
+				segW[j] += segW[j + 1];
+				remove(j + 1);
+			}
+			else
+				j++;
+		}
+	}
+	
+	private void remove(int i)
+	{
+		System.arraycopy(segX, i + 1, segX, i, segments - i - 1);
+		System.arraycopy(segY, i + 1, segY, i, segments - i - 1);
+		System.arraycopy(segW, i + 1, segW, i, segments - i - 1);
+		segments--;
+	}
+	
+	private static int [] grow(int [] a)
+	{
+		int [] b = new int [a.length * 2];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return(b);
+	}
+}
@@ -0,0 +1,416 @@
+package GameEngine;
+
+/**
+ * Turns the pairs found by a broadphase into collision events. The stage remembers which pairs of objects were touching in the
+ * previous tick, so each object is told when it starts touching another object, every tick it stays touching it and when it stops
+ * (see GameObject.onCollisionBegin(), onCollisionStay() and onCollisionEnd()).
+ * <p>
+ * Call step() once per game tick, after the objects have moved. It first runs every pair test and only then delivers the events, in
+ * one batch, so handlers may move, destroy or remove objects without changing the results of the tests still to come. The events are
+ * always delivered in the same order for the same game (so games stay repeatable). The two objects of a pair are told one straight
+ * after the other, the object given first by the broadphase being told first.
+ * <p>
+ * The narrowphase (e.g. a pixel perfect test) is skipped for a pair whose bounding boxes, rotations and images (texture, sprite sheet
+ * frame and reflection) have not changed since it was last tested, the previous result is used instead. A player resting against a
+ * wall, or two objects lying still on top of each other, cost nothing after the first test.
+ * <p>
+ * An object removed from its GameWorld, or given back to its GameObjectPool, loses its contacts at the next step. The objects it was
+ * touching are told the contact ended, the removed object is not, and if it is back in the world by then (e.g. a pooled bullet fired
+ * again) any pair it is in starts afresh with onCollisionBegin().
+ * <p>
+ * Pairs with a fast object (see GameObject.setContinuousCollision()) that moved this tick are tested with SweptCollision instead of
+ * the narrowphase, so the object hits anything it passed through during the tick rather than only what it ended up on.
+ * <p>
+ * Once it has grown to fit the game the stage creates no garbage.
+ * <p>
+ * E.g:<p>
+ * <code> CollisionStage collisions = new CollisionStage(new AABBTree(8), null);</code><p>
+ * <code> ...</code><p>
+ * <code> collisions.step();</code><p>
+ *
+ * @see GameBroadphase
+ * @see GameNarrowphase
+ */
+public class CollisionStage
+{
+	private GameBroadphase broadphase;
+	private GameNarrowphase narrowphase;
+	
+	// What the last test of a pair saw, the bounding box and rotation of both objects
+	private static final int STATE = 10;
+	
+	// The contacts, every pair given by the broadphase in the current or previous step
+	private GameObject [] contactA = new GameObject [64];
+	private GameObject [] contactB = new GameObject [64];
+	// The generation of both objects when the contact was added (see GameObject.detach())
+	private int [] generations = new int [64 * 2];
+	private float [] boxes = new float [64 * STATE];
+	private int [] images = new int [64 * 2];
+	private boolean [] touching = new boolean [64];
+	private boolean [] wasTouching = new boolean [64];
+	private int [] seen = new int [64];
+	private int contactCount = 0;
+	
+	// An open addressing hash table from a pair of objects to its contact
+	private int [] table = new int [128];
+	
+	private int stepCount = 0;
+	private int pairs = 0;
+	private int tests = 0;
+	private int skips = 0;
+	private int touchingCount = 0;
+	
+	//==============================================================================
+	
+	/**
+	 * Constructor
+	 *
+	 * @param broadphase Finds the pairs of objects whose bounding boxes overlap
+	 * @param narrowphase The finer test run on those pairs, or null if overlapping bounding boxes are enough
+	 */
+	public CollisionStage(GameBroadphase broadphase, GameNarrowphase narrowphase)
+	{
+		if (broadphase == null)
+			throw new IllegalArgumentException("The broadphase can not be null");
+		
+		this.broadphase = broadphase;
+		this.narrowphase = narrowphase;
+		java.util.Arrays.fill(table, -1);
+	}
+	
+	/**
+	 * Returns the broadphase
+	 *
+	 * @return The broadphase the pairs come from
+	 */
+	public GameBroadphase getBroadphase()
+	{
+		return(broadphase);
+	}
+	
+	/**
+	 * Returns the narrowphase
+	 *
+	 * @return The finer test, or null if there is none
+	 */
+	public GameNarrowphase getNarrowphase()
+	{
+		return(narrowphase);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Finds the pairs of objects touching this tick and delivers the begin, stay and end events to them
+	 */
+	public void step()
+	{
+		stepCount++;
+		tests = 0;
+		skips = 0;
+		pairs = broadphase.findPairs(pairHandler);
+		
+		// Every pair has been tested, now tell the objects
+		touchingCount = 0;
+		for (int i = 0 ; i < contactCount ; i++)
+		{
+			boolean now = seen[i] == stepCount && touching[i];
+			GameObject a = contactA[i], b = contactB[i];
+			if (now)
+			{
+				touchingCount++;
+				if (wasTouching[i])
+				{
+					a.onCollisionStay(b);
+					b.onCollisionStay(a);
+				}
+				else
+				{
+					a.onCollisionBegin(b);
+					b.onCollisionBegin(a);
+				}
+			}
+			else if (wasTouching[i])
+			{
+				// An object that has left the world since is not told
+				if (generations[i * 2] == a.generation)
+					a.onCollisionEnd(b);
+				if (generations[i * 2 + 1] == b.generation)
+					b.onCollisionEnd(a);
+			}
+			wasTouching[i] = now;
+		}
+		
+		removeStaleContacts();
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns the number of pairs given by the broadphase in the last step
+	 *
+	 * @return The number of pairs
+	 */
+	public int getPairCount()
+	{
+		return(pairs);
+	}
+	
+	/**
+	 * Returns the number of pairs touching after the last step
+	 *
+	 * @return The number of touching pairs
+	 */
+	public int getContactCount()
+	{
+		return(touchingCount);
+	}
+	
+	/**
+	 * Returns the number of pairs the narrowphase (or the sweep test for fast objects) was run on in the last step
+	 *
+	 * @return The number of narrowphase tests
+	 */
+	public int getTestCount()
+	{
+		return(tests);
+	}
+	
+	/**
+	 * Returns the number of pairs in the last step whose objects had not changed since they were tested, so the previous result was used
+	 *
+	 * @return The number of narrowphase tests skipped
+	 */
+	public int getSkipCount()
+	{
+		return(skips);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Records each pair given by the broadphase, testing it unless its objects are unchanged since the last test
+	 */
+	private GameCollisionListener pairHandler = new GameCollisionListener()
+	{
+		public void collision(GameObject a, GameObject b)
+		{
+			int c = findContact(a, b);
+			if (c == -1)
+			{
+				c = addContact(a, b);
+			}
+			else if (seen[c] == stepCount)
+			{
+				// Already given this step
+				return;
+			}
+			else if (sameState(c, a, b))
+			{
+				seen[c] = stepCount;
+				skips++;
+				return;
+			}
+			
+			seen[c] = stepCount;
+			storeState(c, a, b);
+			if (a.isSwept() || b.isSwept())
+			{
+				touching[c] = SweptCollision.timeOfImpact(a, b) >= 0.0f;
+				tests++;
+			}
+			else
+			{
+				touching[c] = narrowphase == null || narrowphase.collides(a, b);
+				if (narrowphase != null)
+					tests++;
+			}
+		}
+	};
+	
+	/**
+	 * Returns the contact of a pair of objects, in either order, or -1 if there is none. A contact from before either object last
+	 * left the world is not returned
+	 */
+	private int findContact(GameObject a, GameObject b)
+	{
+		int mask = table.length - 1;
+		for (int slot = hash(a, b) & mask ; table[slot] != -1 ; slot = (slot + 1) & mask)
+		{
+			int c = table[slot];
+			if (((contactA[c] == a && contactB[c] == b) || (contactA[c] == b && contactB[c] == a)) &&
+					generations[c * 2] == contactA[c].generation && generations[c * 2 + 1] == contactB[c].generation)
+				return(c);
+		}
+		return(-1);
+	}
+	
+	/**
+	 * Adds a contact for a pair of objects that were not touching
+	 */
+	private int addContact(GameObject a, GameObject b)
+	{
+		if (contactCount == contactA.length)
+			growContacts();
+		
+		int c = contactCount++;
+		contactA[c] = a;
+		contactB[c] = b;
+		generations[c * 2] = a.generation;
+		generations[c * 2 + 1] = b.generation;
+		wasTouching[c] = false;
+		
+		// Keep the table at most half full
+		if (contactCount * 2 > table.length)
+		{
+			table = new int [table.length * 2];
+			rebuildTable();
+		}
+		else
+		{
+			insert(c);
+		}
+		return(c);
+	}
+	
+	/**
+	 * Drops the contacts the broadphase did not give this step, keeping the others in the order they were added
+	 */
+	private void removeStaleContacts()
+	{
+		int kept = 0;
+		for (int i = 0 ; i < contactCount ; i++)
+		{
+			if (seen[i] != stepCount)
+				continue;
+			
+			if (kept != i)
+			{
+				contactA[kept] = contactA[i];
+				contactB[kept] = contactB[i];
+				generations[kept * 2] = generations[i * 2];
+				generations[kept * 2 + 1] = generations[i * 2 + 1];
+				System.arraycopy(boxes, i * STATE, boxes, kept * STATE, STATE);
+				images[kept * 2] = images[i * 2];
+				images[kept * 2 + 1] = images[i * 2 + 1];
+				touching[kept] = touching[i];
+				wasTouching[kept] = wasTouching[i];
+				seen[kept] = seen[i];
+			}
+			kept++;
+		}
+		if (kept == contactCount)
+			return;
+		
+		for (int i = kept ; i < contactCount ; i++)
+		{
+			contactA[i] = null;
+			contactB[i] = null;
+		}
+		contactCount = kept;
+		rebuildTable();
+	}
+	
+	private void rebuildTable()
+	{
+		java.util.Arrays.fill(table, -1);
+		for (int i = 0 ; i < contactCount ; i++)
+			insert(i);
+	}
+	
+	private void insert(int c)
+	{
+		int mask = table.length - 1;
+		int slot = hash(contactA[c], contactB[c]) & mask;
+		while (table[slot] != -1)
+			slot = (slot + 1) & mask;
+		table[slot] = c;
+	}
+	
+	/**
+	 * Hashes a pair of objects, giving the same value for either order
+	 */
+	private static int hash(GameObject a, GameObject b)
+	{
+		int h = (System.identityHashCode(a) + System.identityHashCode(b)) * 0x9E3779B1;
+		return(h ^ (h >>> 16));
+	}
+	
+	//==============================================================================
+	
+	private boolean sameState(int c, GameObject a, GameObject b)
+	{
+		if (contactA[c] != a)
+		{
+			GameObject t = a;
+			a = b;
+			b = t;
+		}
+		
+		return(images[c * 2] == a.getImageKey() && images[c * 2 + 1] == b.getImageKey() &&
+				sameState(c * STATE, a) && sameState(c * STATE + STATE / 2, b));
+	}
+	
+	private boolean sameState(int i, GameObject o)
+	{
+		return(boxes[i] == o.getBoundsX() && boxes[i + 1] == o.getBoundsY() && boxes[i + 2] == o.getWidth() && boxes[i + 3] == o.getHeight() &&
+				boxes[i + 4] == o.getRotation());
+	}
+	
+	private void storeState(int c, GameObject a, GameObject b)
+	{
+		if (contactA[c] != a)
+		{
+			GameObject t = a;
+			a = b;
+			b = t;
+		}
+		
+		images[c * 2] = a.getImageKey();
+		images[c * 2 + 1] = b.getImageKey();
+		storeState(c * STATE, a);
+		storeState(c * STATE + STATE / 2, b);
+	}
+	
+	private void storeState(int i, GameObject o)
+	{
+		boxes[i] = o.getBoundsX();
+		boxes[i + 1] = o.getBoundsY();
+		boxes[i + 2] = o.getWidth();
+		boxes[i + 3] = o.getHeight();
+		boxes[i + 4] = o.getRotation();
+	}
+	
+	private void growContacts()
+	{
+		int n = contactCount * 2;
+		GameObject [] a = new GameObject [n];
+		GameObject [] b = new GameObject [n];
+		System.arraycopy(contactA, 0, a, 0, contactCount);
+		System.arraycopy(contactB, 0, b, 0, contactCount);
+		contactA = a;
+		contactB = b;
+		
+		int [] g = new int [n * 2];
+		System.arraycopy(generations, 0, g, 0, contactCount * 2);
+		generations = g;
+		g = new int [n * 2];
+		System.arraycopy(images, 0, g, 0, contactCount * 2);
+		images = g;
+		
+		float [] f = new float [n * STATE];
+		System.arraycopy(boxes, 0, f, 0, contactCount * STATE);
+		boxes = f;
+		
+		boolean [] t = new boolean [n];
+		System.arraycopy(touching, 0, t, 0, contactCount);
+		touching = t;
+		t = new boolean [n];
+		System.arraycopy(wasTouching, 0, t, 0, contactCount);
+		wasTouching = t;
+		
+		int [] s = new int [n];
+		System.arraycopy(seen, 0, s, 0, contactCount);
+		seen = s;
+	}
+}
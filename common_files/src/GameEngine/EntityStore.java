@@ -0,0 +1,300 @@
+package GameEngine;
+
+/**
+ * Stores the transforms of many GameObjects in plain arrays (one array per value), instead of inside each object. This is for games
+ * with tens of thousands of objects: moving all of them or finding the ones inside a rectangle is then a straight loop over a few
+ * arrays rather than a hop from object to object all over memory.
+ * <p>
+ * An object is put into a store with GameObject.setEntityStore(). From then on its position and rotation live in the store (the
+ * object's accessors read and write the store) and it has a velocity, which integrate() adds to its position. The texture and sprite
+ * sheet frame of each object are kept in the store as well so that they can be checked without touching the objects.
+ * <p>
+ * The arrays are reached with getX(), getY() etc and entity i belongs to getObject(i). Entities are swap-removed, so an object's index
+ * can change whenever another object leaves the store, and the arrays are replaced when the store grows: fetch them again after adding
+ * or removing objects.
+ * <p>
+ * Please note that while an object is in a store its (protected) position and rotation fields are not kept up to date, so code
+ * extending GameObject must use the accessors (getPosition(), setPosition(), incrementPosition(), setRotation() etc) instead.
+ * <p>
+ * E.g:<p>
+ * <code> EntityStore store = new EntityStore(50000);</code><p>
+ * <code> bullet.setEntityStore(store);</code><p>
+ * <code> store.setVelocity(bullet, 4.0f, 0.0f);</code><p>
+ * <code> ...</code><p>
+ * <code> store.integrate();</code><p>
+ *
+ * @see GameObject
+ */
+public class EntityStore
+{
+	private int count = 0;
+	
+	float [] x;
+	float [] y;
+	float [] rotation;
+	float [] vx;
+	float [] vy;
+	int [] texture;
+	int [] frame;
+	private GameObject [] objects;
+	
+	//==============================================================================
+	
+	/**
+	 * Creates an empty store
+	 *
+	 * @param capacity The number of entities to make room for (it grows as needed)
+	 */
+	public EntityStore(int capacity)
+	{
+		allocate(Math.max(16, capacity));
+	}
+	
+	/**
+	 * Creates (or grows) the arrays, keeping the current entities
+	 */
+	private void allocate(int n)
+	{
+		x = grow(x, n);
+		y = grow(y, n);
+		rotation = grow(rotation, n);
+		vx = grow(vx, n);
+		vy = grow(vy, n);
+		texture = grow(texture, n);
+		frame = grow(frame, n);
+		
+		GameObject [] o = new GameObject [n];
+		if (objects != null)
+			System.arraycopy(objects, 0, o, 0, count);
+		objects = o;
+	}
+	
+	private float [] grow(float [] a, int n)
+	{
+		float [] b = new float [n];
+		if (a != null)
+			System.arraycopy(a, 0, b, 0, count);
+		return(b);
+	}
+	
+	private int [] grow(int [] a, int n)
+	{
+		int [] b = new int [n];
+		if (a != null)
+			System.arraycopy(a, 0, b, 0, count);
+		return(b);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Adds an entity for an object, called by GameObject.setEntityStore()
+	 *
+	 * @return The index of the new entity
+	 */
+	int add(GameObject o, float px, float py, float r)
+	{
+		if (count == objects.length)
+			allocate(count * 2);
+		
+		int i = count++;
+		x[i] = px;
+		y[i] = py;
+		rotation[i] = r;
+		vx[i] = 0.0f;
+		vy[i] = 0.0f;
+		texture[i] = -1;
+		frame[i] = 0;
+		objects[i] = o;
+		return(i);
+	}
+	
+	/**
+	 * Removes an entity, called by GameObject.setEntityStore(). The last entity is moved into its place
+	 */
+	void remove(int i)
+	{
+		int last = --count;
+		if (i != last)
+		{
+			x[i] = x[last];
+			y[i] = y[last];
+			rotation[i] = rotation[last];
+			vx[i] = vx[last];
+			vy[i] = vy[last];
+			texture[i] = texture[last];
+			frame[i] = frame[last];
+			objects[i] = objects[last];
+			objects[i].entityIndex = i;
+		}
+		objects[last] = null;
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Moves every entity by its velocity (the same as calling incrementPosition(vx, vy) on every object in the store)
+	 */
+	public void integrate()
+	{
+		float [] px = x, py = y, dx = vx, dy = vy;
+		for (int i = 0 ; i < count ; i++)
+		{
+			px[i] += dx[i];
+			py[i] += dy[i];
+		}
+	}
+	
+	/**
+	 * Finds the entities whose position is inside a rectangle, e.g. to find the objects that are on screen
+	 *
+	 * @param minX The left of the rectangle
+	 * @param minY The bottom of the rectangle
+	 * @param maxX The right of the rectangle
+	 * @param maxY The top of the rectangle
+	 * @param out Filled with the indices of the entities found, as many as fit
+	 * @return The number of entities found (which may be more than fitted in out)
+	 */
+	public int findInRect(float minX, float minY, float maxX, float maxY, int [] out)
+	{
+		float [] px = x, py = y;
+		int found = 0;
+		for (int i = 0 ; i < count ; i++)
+		{
+			if (px[i] >= minX && px[i] <= maxX && py[i] >= minY && py[i] <= maxY)
+			{
+				if (found < out.length)
+					out[found] = i;
+				found++;
+			}
+		}
+		return(found);
+	}
+	
+	/**
+	 * Takes every object marked for destruction out of the store (their transforms are copied back into the objects)
+	 *
+	 * @return The number of objects taken out
+	 */
+	public int removeDestroyed()
+	{
+		int removed = 0;
+		for (int i = count - 1 ; i >= 0 ; i--)
+		{
+			if (objects[i].isMarkedForDestruction())
+			{
+				objects[i].setEntityStore(null);
+				removed++;
+			}
+		}
+		return(removed);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Sets the velocity of an object in this store
+	 *
+	 * @param o The object
+	 * @param velX The distance to move along x each time integrate() is called
+	 * @param velY The distance to move along y each time integrate() is called
+	 */
+	public void setVelocity(GameObject o, float velX, float velY)
+	{
+		if (o.entityStore != this)
+			throw new IllegalArgumentException("The object is not in this store");
+		vx[o.entityIndex] = velX;
+		vy[o.entityIndex] = velY;
+	}
+	
+	/**
+	 * Returns the number of entities in the store
+	 *
+	 * @return The number of entities
+	 */
+	public int size()
+	{
+		return(count);
+	}
+	
+	/**
+	 * Returns the object an entity belongs to
+	 *
+	 * @param i The index of the entity
+	 * @return The GameObject
+	 */
+	public GameObject getObject(int i)
+	{
+		return(objects[i]);
+	}
+	
+	/**
+	 * Returns the x positions of the entities, only the first size() values are used
+	 *
+	 * @return The x position array
+	 */
+	public float [] getX()
+	{
+		return(x);
+	}
+	
+	/**
+	 * Returns the y positions of the entities, only the first size() values are used
+	 *
+	 * @return The y position array
+	 */
+	public float [] getY()
+	{
+		return(y);
+	}
+	
+	/**
+	 * Returns the rotations (in degrees) of the entities, only the first size() values are used
+	 *
+	 * @return The rotation array
+	 */
+	public float [] getRotation()
+	{
+		return(rotation);
+	}
+	
+	/**
+	 * Returns the x velocities of the entities, only the first size() values are used
+	 *
+	 * @return The x velocity array
+	 */
+	public float [] getVelocityX()
+	{
+		return(vx);
+	}
+	
+	/**
+	 * Returns the y velocities of the entities, only the first size() values are used
+	 *
+	 * @return The y velocity array
+	 */
+	public float [] getVelocityY()
+	{
+		return(vy);
+	}
+	
+	/**
+	 * Returns the active texture index of each entity's object (-1 if it has none), only the first size() values are used
+	 *
+	 * @return The texture index array
+	 */
+	public int [] getTexture()
+	{
+		return(texture);
+	}
+	
+	/**
+	 * Returns the sprite sheet frame of each entity's object (row * columns + column), only the first size() values are used
+	 *
+	 * @return The frame array
+	 */
+	public int [] getFrame()
+	{
+		return(frame);
+	}
+}
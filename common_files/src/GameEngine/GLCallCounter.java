@@ -0,0 +1,155 @@
+package GameEngine;
+
+import javax.media.opengl.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * Counts the OpenGL calls made through a GL, for checking how much work the renderer gives the driver each frame.
+ * <p>
+ * The counter hands out a GL2 that counts every call by name and then passes it on to the real GL. Without a real GL it is a stub
+ * that does nothing and returns 0, false or null, so the rendering can be measured headless, e.g:<p>
+ * <code> GLCallCounter counter = new GLCallCounter(null);</code><p>
+ * <code> HeadlessRunner runner = new HeadlessRunner(game);</code><p>
+ * <code> runner.render(counter.getGL());</code><p>
+ * <code> System.out.println(counter);</code><p>
+ * Counting is slow, it is only meant for testing.
+ */
+public class GLCallCounter implements InvocationHandler
+{
+	private GL real;
+	private GL2 proxy;
+	private TreeMap<String, int []> counts = new TreeMap<String, int []>();
+	private int total = 0;
+	
+	//==============================================================================
+	
+	/**
+	 * Constructor
+	 *
+	 * @param real The GL to pass the calls on to, or null to only count them
+	 */
+	public GLCallCounter(GL real)
+	{
+		this.real = real;
+		proxy = (GL2)Proxy.newProxyInstance(GL2.class.getClassLoader(), new Class<?> [] {GL2.class}, this);
+	}
+	
+	/**
+	 * Returns the counting GL
+	 *
+	 * @return A GL2 that counts each call made through it
+	 */
+	public GL2 getGL()
+	{
+		return(proxy);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns the number of calls made since the counter was created or reset
+	 *
+	 * @return The number of calls
+	 */
+	public synchronized int getCalls()
+	{
+		return(total);
+	}
+	
+	/**
+	 * Returns the number of calls made to one method since the counter was created or reset
+	 *
+	 * @param method The name of the GL method, e.g. "glDrawArrays"
+	 * @return The number of calls
+	 */
+	public synchronized int getCalls(String method)
+	{
+		int [] count = counts.get(method);
+		return(count == null ? 0 : count[0]);
+	}
+	
+	/**
+	 * Sets all the counts back to 0
+	 */
+	public synchronized void reset()
+	{
+		counts.clear();
+		total = 0;
+	}
+	
+	/**
+	 * Returns the counts of each method called
+	 */
+	public synchronized String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(total).append(" GL calls");
+		for (Map.Entry<String, int []> e : counts.entrySet())
+			sb.append("\n  ").append(e.getKey()).append(": ").append(e.getValue()[0]);
+		return(sb.toString());
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Counts a call and passes it on
+	 */
+	public Object invoke(Object p, Method method, Object [] args) throws Throwable
+	{
+		String name = method.getName();
+		
+		// Asking for the GL itself is not a GL call, keep handing out the counting one
+		if (name.equals("getGL") || name.equals("getGL2") || name.equals("getGL2ES1") || name.equals("getGL2GL3"))
+			return(proxy);
+		if (method.getDeclaringClass() == Object.class)
+		{
+			if (name.equals("equals"))
+				return(p == args[0]);
+			if (name.equals("hashCode"))
+				return(System.identityHashCode(p));
+			return("GLCallCounter");
+		}
+		
+		synchronized (this)
+		{
+			int [] count = counts.get(name);
+			if (count == null)
+				counts.put(name, count = new int [1]);
+			count[0]++;
+			total++;
+		}
+		
+		if (real != null)
+		{
+			try
+			{
+				return(method.invoke(real, args));
+			}
+			catch (InvocationTargetException e)
+			{
+				throw e.getCause();
+			}
+		}
+		
+		// A stub, answer with nothing
+		Class<?> type = method.getReturnType();
+		if (type == boolean.class)
+			return(Boolean.FALSE);
+		if (type == int.class)
+			return(Integer.valueOf(0));
+		if (type == long.class)
+			return(Long.valueOf(0));
+		if (type == float.class)
+			return(Float.valueOf(0));
+		if (type == double.class)
+			return(Double.valueOf(0));
+		if (type == short.class)
+			return(Short.valueOf((short)0));
+		if (type == byte.class)
+			return(Byte.valueOf((byte)0));
+		if (type == char.class)
+			return(Character.valueOf((char)0));
+		return(null);
+	}
+}
@@ -1,6 +1,13 @@
 package GameEngine;
 
 import java.util.Stack;
+import java.util.Random;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.media.opengl.*;
 import com.jogamp.opengl.util.texture.*;
 import java.io.*;
@@ -9,6 +16,9 @@ import java.awt.event.*;
 import java.awt.geom.*;
 import java.awt.*;
 import java.nio.*;
+import java.awt.image.*;
+import javax.imageio.*;
+import java.lang.management.ManagementFactory;
 
 /**
  * This class holds the basic components for running a game. Classes should extend this class and over-ride the 
@@ -41,8 +51,16 @@ import java.nio.*;
  * <code> JFrame frame = new JFrame("My Fantastic Game");</code><p>
  * <code> FantasticGame fanGame = new FantasticGame(100);</code><p>
  * <code> fanGame.linkToFrame(frame);</code><p>
+ * <p>
+ * A game can also be run without a window (for simulations, soak tests or benchmarks) by handing it to a HeadlessRunner instead of
+ * a GameCanvas. In that case renderStep() is only called by HeadlessRunner.render() and the audio is disabled.
+ * <p>
+ * Each game normally runs on a timer thread of its own. To run several games in one process add them to a GameScheduler, which
+ * ticks them all on a few shared threads.
  * 
  * @see GameCanvas
+ * @see HeadlessRunner
+ * @see GameScheduler
  * @see GameObject
  * @see GameTexture
  *
@@ -51,9 +69,80 @@ import java.nio.*;
  */
 public abstract class Game 
 {
-	int game_frames_per_second;
+	volatile int game_frames_per_second;
+	private int requestedGFPS;
 	private boolean initialised;
+	private boolean headless = false;
 	private GameTimer timer;
+	GameScheduler scheduler = null;
+	private boolean timerStarted = false;
+	
+	/**
+	 * Scheduler mode where the game timer renders as many frames as it can between game ticks. This keeps a CPU core busy
+	 * all the time but has the lowest latency. This is the default mode
+	 */
+	public static final int SCHEDULER_SPIN = 0;
+	/**
+	 * Scheduler mode where the game timer sleeps until the next game tick or frame is due. This uses far less CPU, see setRenderCap()
+	 */
+	public static final int SCHEDULER_PARK = 1;
+	
+	/**
+	 * Threading mode where the game logic and the rendering run one after the other on the game timer thread. This is the default mode
+	 */
+	public static final int THREADING_SINGLE = 0;
+	/**
+	 * Threading mode where the game logic runs on the game timer thread and the rendering runs on a thread of its own, see setThreadingMode()
+	 */
+	public static final int THREADING_SEPARATE_RENDER = 1;
+	
+	volatile int schedulerMode = SCHEDULER_SPIN;
+	int threadingMode = THREADING_SINGLE;
+	RenderSnapshot.Exchange snapshots = new RenderSnapshot.Exchange();
+	private GameDrawer recordingDrawer;
+	private GameDrawer directDrawer;
+	volatile int renderCap = 0;
+	GameTimerStats timerStats = new GameTimerStats();
+	
+	// Overload protection, see setMaxCatchUpTime() and setAdaptiveTickRate()
+	volatile long maxCatchUpTime = 0;
+	volatile int minGFPS = 0;
+	
+	// The allocation budget debug mode, see setAllocationBudget()
+	private volatile long allocationBudget = 0;
+	private volatile boolean allocationBudgetFail = false;
+	private static com.sun.management.ThreadMXBean allocationBean;
+	
+	// Render interpolation, the timer keeps the time the next game tick is due up to date
+	volatile boolean interpolation = false;
+	long tickCount = 0;
+	
+	// Sprites are drawn in batches, see setSpriteBatching() and setSpriteSorting()
+	volatile boolean spriteBatching = true;
+	volatile boolean spriteSorting = false;
+	private SpriteBatch spriteBatch = new SpriteBatch();
+	volatile long nextTickTime = 0;
+	volatile long tickLength = 1;
+	
+	// Input recording and the seeded random numbers that make a recorded session repeatable
+	InputRecorder inputRecorder = null;
+	private long randomSeed = System.nanoTime();
+	private Random random = new Random(randomSeed);
+	
+	// The parallel update phase, see doTimeSteps()
+	private volatile ForkJoinPool updatePool;
+	private int updateThreads = Runtime.getRuntime().availableProcessors();
+	private GameObject [] updateObjects = new GameObject [256];
+	
+	// The job system, see submitJob()
+	private ExecutorService jobPool;
+	private boolean jobsShutdown = false;
+	private ConcurrentLinkedQueue<CompletedJob<?>> completedJobs = new ConcurrentLinkedQueue<CompletedJob<?>>();
+	private ConcurrentLinkedQueue<TextureUpload> textureUploads = new ConcurrentLinkedQueue<TextureUpload>();
+	private AtomicInteger pendingJobs = new AtomicInteger(0);
+	private volatile int jobCompletionLimit = 0;
+	private volatile long jobCompletionBudget = 2000000L;
+	private GLProfile glProfile;
 	
 	protected GameAudio gameAudio;
 	
@@ -68,6 +157,10 @@ public abstract class Game
 	Point mousePos = new Point(0,0);
 
 	Dimension viewPortDimension = new Dimension(1,1);
+	boolean viewPortSet = false; // Nothing is culled until the viewport's size is known
+	
+	// Objects outside the viewport are not drawn, see setViewportCulling()
+	volatile boolean viewportCulling = true;
 	
 	boolean [] keyTypedVec = new boolean [512];
 	Stack<Integer> keyTypedStack = new Stack<Integer>();
@@ -91,6 +184,7 @@ public abstract class Game
 	{
 		System.out.println("abstract class Game constructor");
 		game_frames_per_second = GFPS;
+		requestedGFPS = GFPS;
 		initialised = false;
 	}
 	
@@ -106,76 +200,1051 @@ public abstract class Game
 	}
 	
 	/**
-	 * Call this function when you wish to exit the game. It is recommended that you call this and not System.exit(0) to end you game.
-	 * Use the linkToFrame(JFrame f) to ensure this method is called when the frame is closed
+	 * Starts the game without a GLCanvas. No OpenGL or OpenAL resources are created, textures are only decoded into
+	 * their byte buffers and renderStep() is only called by HeadlessRunner.render(). Used by the HeadlessRunner
+	 */
+	final void startHeadless()
+	{
+		headless = true;
+		
+		// The renderer is never attached to a drawable, it only provides the font metrics
+		new GameRenderer(this);
+		timer = new GameTimer(this, null);
+		gameAudio = new GameAudio(false);
+		
+		initStep(new ResourceLoader(null, fr));
+		initialised = true;
+	}
+	
+	/**
+	 * Returns whether this game is running without a display (see HeadlessRunner)
+	 *
+	 * @return True if the game is running headless
+	 */
+	public boolean isHeadless()
+	{
+		return(headless);
+	}
+	
+	/**
+	 * Starts the game timer (called once the game has been initialised)
+	 */
+	final void startTimer()
+	{
+		timerStarted = true;
+		if (scheduler != null)
+			scheduler.attach(timer);
+		else
+			timer.start();
+	}
+	
+	/**
+	 * Returns whether the game timer has been started (it may since have ended)
+	 */
+	final boolean timerStarted()
+	{
+		return(timerStarted);
+	}
+	
+	/**
+	 * Returns whether the game timer is running, i.e. the game has started and not yet ended
+	 */
+	final boolean timerRunning()
+	{
+		return(timer != null && timer.isRunning());
+	}
+	
+	/**
+	 * Call this function when you wish to exit the game. It is recommended that you call this and not System.exit(0) to end you game.
+	 * Use the linkToFrame(JFrame f) to ensure this method is called when the frame is closed
+	 */
+	public void endGame()
+	{
+		timer.endGame();
+		gameAudio.KillAllData();
+		synchronized (this)
+		{
+			// The jobs that never started will never be handed over either
+			jobsShutdown = true;
+			if (jobPool != null)
+				pendingJobs.addAndGet(-jobPool.shutdownNow().size());
+		}
+		// Nor will the decoded textures still waiting for the GL thread
+		while (textureUploads.poll() != null)
+			pendingJobs.decrementAndGet();
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Sets how the game timer waits between game ticks. SCHEDULER_SPIN (the default) renders frames continuously between game ticks,
+	 * which uses an entire CPU core. SCHEDULER_PARK sleeps until the next game tick or frame is due, which saves a lot of CPU (and battery)
+	 * without making the game ticks any less regular. This can be changed while the game is running.
+	 *
+	 * @param mode Either SCHEDULER_SPIN or SCHEDULER_PARK
+	 */
+	public void setSchedulerMode(int mode)
+	{
+		if (mode != SCHEDULER_SPIN && mode != SCHEDULER_PARK)
+			throw new IllegalArgumentException("Unknown scheduler mode " + mode);
+		schedulerMode = mode;
+	}
+	
+	/**
+	 * Returns the current scheduler mode
+	 *
+	 * @return Either SCHEDULER_SPIN or SCHEDULER_PARK
+	 */
+	public int getSchedulerMode()
+	{
+		return(schedulerMode);
+	}
+	
+	/**
+	 * Sets the maximum number of frames per second to render when using SCHEDULER_PARK. With a cap of 0 (the default) a frame is
+	 * rendered once after each game tick. The cap is ignored with SCHEDULER_SPIN.
+	 *
+	 * @param fps The maximum frames per second, or 0 to render once per game tick
+	 */
+	public void setRenderCap(int fps)
+	{
+		renderCap = Math.max(0, fps);
+	}
+	
+	/**
+	 * Sets whether the rendering runs on its own thread. This must be set before the game is started (i.e. before creating the GameCanvas).
+	 * <p>
+	 * With THREADING_SEPARATE_RENDER the renderStep() is still called on the logic thread (straight after each game tick) but nothing is
+	 * drawn, instead everything that is drawn is copied into a snapshot. The render thread then draws the latest snapshot. A slow frame
+	 * (e.g. the graphics driver stalling) then no longer holds up the game ticks.
+	 * <p>
+	 * Please note that in this mode the renderStep() is called once for every game tick (or for every group of ticks if the game is
+	 * catching up) so it should be kept as light as possible.
+	 *
+	 * @param mode Either THREADING_SINGLE or THREADING_SEPARATE_RENDER
+	 */
+	public void setThreadingMode(int mode)
+	{
+		if (mode != THREADING_SINGLE && mode != THREADING_SEPARATE_RENDER)
+			throw new IllegalArgumentException("Unknown threading mode " + mode);
+		if (timer != null && (timer.isAlive() || timer.isRunning()))
+			throw new IllegalStateException("The threading mode can not be changed once the game has started");
+		threadingMode = mode;
+	}
+	
+	/**
+	 * Returns the current threading mode
+	 *
+	 * @return Either THREADING_SINGLE or THREADING_SEPARATE_RENDER
+	 */
+	public int getThreadingMode()
+	{
+		return(threadingMode);
+	}
+	
+	/**
+	 * Enables render interpolation. Game ticks run at fixed intervals but frames are rendered whenever the renderer gets a chance, so
+	 * without interpolation moving objects are drawn in the same place until the next game tick and appear to stutter unless the
+	 * GFPS is very high. With interpolation every GameObject is drawn part of the way between where it was at the previous game tick
+	 * and where it is now, depending on how far the render is between two game ticks. This gives smooth movement at a much lower
+	 * GFPS (30 is usually plenty), at the cost of drawing objects up to one game tick behind where they are.
+	 * <p>
+	 * Note that this only helps if frames are rendered more often than game ticks (use SCHEDULER_SPIN or a render cap higher than the GFPS).
+	 * Call snapInterpolation() on an object after teleporting it. Anything else you draw that should move smoothly (e.g. the world
+	 * offset of a camera following the player) can be interpolated by hand using the alpha passed to renderStep(GameDrawer, float).
+	 *
+	 * @param enabled True to interpolate GameObjects when drawing them
+	 */
+	public void setInterpolation(boolean enabled)
+	{
+		interpolation = enabled;
+	}
+	
+	/**
+	 * Returns whether render interpolation is enabled
+	 *
+	 * @return True if GameObjects are drawn interpolated
+	 */
+	public boolean getInterpolation()
+	{
+		return(interpolation);
+	}
+	
+	/**
+	 * Enables drawing GameObjects in batches (on by default). Instead of drawing each object with its own set of OpenGL calls, the
+	 * corners of the objects are worked out on the CPU and gathered into a vertex array, which is drawn in one call each time the
+	 * texture changes. Drawing many objects that share a texture (tiles, bullets, a sprite sheet) then costs a handful of OpenGL calls
+	 * rather than a dozen or so per object. The objects can also be sorted by texture and depth before they are drawn, see
+	 * setSpriteSorting().
+	 *
+	 * @param enabled True to draw GameObjects in batches, false to draw each one on its own
+	 */
+	public void setSpriteBatching(boolean enabled)
+	{
+		spriteBatching = enabled;
+	}
+	
+	/**
+	 * Returns whether GameObjects are drawn in batches
+	 *
+	 * @return True if sprite batching is enabled
+	 */
+	public boolean getSpriteBatching()
+	{
+		return(spriteBatching);
+	}
+	
+	/**
+	 * Enables sorting the GameObjects in a batch before they are drawn (off by default, only used with sprite batching). Objects
+	 * whose texture has no see-through pixels, drawn in an opaque colour, are drawn first and grouped by texture, the depth test
+	 * puts them in front of or behind each other. The translucent objects are then drawn from the lowest depth to the highest, so
+	 * they blend correctly over what is behind them however they overlap.
+	 * <p>
+	 * Objects at the same depth are grouped by texture too, and the depth test lets the last one drawn win. Two overlapping objects
+	 * at the same depth (opaque or translucent) are then drawn on top of each other by texture rather than in the order they were
+	 * given, so only enable sorting once overlapping objects have different depths.
+	 * <p>
+	 * The objects drawn between two shapes are sorted together, shapes and text are still drawn in the order they were given.
+	 * With sorting disabled the objects are drawn in the order they were given, as when batching is disabled.
+	 *
+	 * @param enabled True to sort the objects, false to draw them in the order they were given
+	 */
+	public void setSpriteSorting(boolean enabled)
+	{
+		spriteSorting = enabled;
+	}
+	
+	/**
+	 * Returns whether batched GameObjects are sorted before they are drawn
+	 *
+	 * @return True if sprite sorting is enabled
+	 */
+	public boolean getSpriteSorting()
+	{
+		return(spriteSorting);
+	}
+	
+	/**
+	 * Enables viewport culling (on by default). GameObjects that lie outside the viewport once the world offset is applied are
+	 * skipped by GameDrawer.draw(), so drawing a large world only costs as much as the part of it on screen. A rotated object is
+	 * kept if the circle it rotates in touches the viewport. Shapes and text are never culled.
+	 * <p>
+	 * To skip work of your own for objects off screen use GameDrawer.isVisible() or GameDrawer.getVisibleObjects().
+	 *
+	 * @param enabled True to skip drawing objects outside the viewport
+	 */
+	public void setViewportCulling(boolean enabled)
+	{
+		viewportCulling = enabled;
+	}
+	
+	/**
+	 * Returns whether objects outside the viewport are skipped when drawing
+	 *
+	 * @return True if viewport culling is enabled
+	 */
+	public boolean getViewportCulling()
+	{
+		return(viewportCulling);
+	}
+	
+	/**
+	 * Returns how far (between 0.0 and 1.0) the current moment is between the last game tick and the next one
+	 */
+	float computeAlpha()
+	{
+		float alpha = 1.0f - (float)(nextTickTime - System.nanoTime()) / tickLength;
+		return(Math.max(0.0f, Math.min(1.0f, alpha)));
+	}
+	
+	/**
+	 * Returns the timing statistics recorded by the game timer, such as how long the logic and render steps take, how regularly the game
+	 * ticks are running and how often the game has to catch up
+	 *
+	 * @return The timer statistics
+	 */
+	public GameTimerStats getTimerStats()
+	{
+		return(timerStats);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Sets the longest time the game timer may spend running game ticks back to back (to catch up after falling behind) before it renders a frame.
+	 * <p>
+	 * Whenever this limit, or the limit of 15 game ticks in a row, is reached and the game is still behind, the time it is behind by is
+	 * discarded rather than caught up later. The game then runs slower for a moment instead of freezing while it works through the
+	 * backlog. The discarded time is counted in the timer statistics (see GameTimerStats.getDiscardedTime()).
+	 *
+	 * @param milliseconds The catch up time budget in milliseconds, or 0 (the default) for only the 15 game tick limit
+	 */
+	public void setMaxCatchUpTime(int milliseconds)
+	{
+		maxCatchUpTime = Math.max(0, milliseconds) * 1000000L;
+	}
+	
+	/**
+	 * Returns the catch up time budget
+	 *
+	 * @return The catch up time budget in milliseconds, 0 if there is none
+	 */
+	public int getMaxCatchUpTime()
+	{
+		return((int)(maxCatchUpTime / 1000000L));
+	}
+	
+	/**
+	 * Lets the game timer lower the GFPS when the logicStep() can not keep up with it for a sustained period (about a second).
+	 * The GFPS is lowered in steps down to the given minimum, and raised again in steps up to the GFPS given to the constructor
+	 * once the logicStep() has plenty of time to spare.
+	 * <p>
+	 * Each change calls onTickRateChanged() on the logic thread, which games that move things a fixed amount per game tick should
+	 * over-ride to scale their speeds.
+	 *
+	 * @param minGFPS The lowest GFPS the game may be lowered to, or 0 (the default) to keep the GFPS fixed
+	 */
+	public void setAdaptiveTickRate(int minGFPS)
+	{
+		this.minGFPS = Math.max(0, Math.min(minGFPS, requestedGFPS));
+	}
+	
+	/**
+	 * Returns the current game-frames-per-second. This is the GFPS given to the constructor unless it has been lowered by the
+	 * adaptive tick rate (see setAdaptiveTickRate())
+	 *
+	 * @return The current GFPS
+	 */
+	public int getGFPS()
+	{
+		return(game_frames_per_second);
+	}
+	
+	/**
+	 * Changes the GFPS, called by the game timer on the logic thread
+	 */
+	final synchronized void changeTickRate(int newGFPS)
+	{
+		int oldGFPS = game_frames_per_second;
+		game_frames_per_second = newGFPS;
+		tickLength = 1000000000L / newGFPS;
+		timerStats.tickRateChanges.incrementAndGet();
+		onTickRateChanged(oldGFPS, newGFPS);
+	}
+	
+	/**
+	 * Returns the GFPS given to the constructor, the highest the adaptive tick rate will raise the GFPS back up to
+	 */
+	final int getRequestedGFPS()
+	{
+		return(requestedGFPS);
+	}
+	
+	/**
+	 * Called on the logic thread (between game ticks) when the adaptive tick rate changes the GFPS. Does nothing by default.
+	 * Over-ride this to adjust anything that depends on the length of a game tick, such as speeds given in pixels per game tick.
+	 *
+	 * @param oldGFPS The previous game-frames-per-second
+	 * @param newGFPS The new game-frames-per-second
+	 */
+	protected void onTickRateChanged(int oldGFPS, int newGFPS)
+	{
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * A debug mode that measures how much memory each game tick and each frame allocates, to keep garbage collection pauses out of
+	 * the game. The engine's own game tick and frame paths allocate nothing once the game is running, so anything measured comes
+	 * from the game's logicStep() and renderStep() (or from textures being loaded).
+	 * <p>
+	 * The bytes allocated are recorded in the timer statistics (see GameTimerStats.getTickAllocation() and getFrameAllocation()).
+	 * When a game tick or frame allocates more than the budget it is counted, and then either reported on System.err or, if
+	 * failOnExceed is set, an IllegalStateException is thrown from the game tick or frame (which stops the game). The first second
+	 * of game ticks is not checked, as the JVM is still warming up.
+	 * <p>
+	 * When rendering on a separate thread (see setThreadingMode()) the recording of the renderStep() counts towards the game tick
+	 * it follows and the frame is just the drawing of the recording.
+	 * <p>
+	 * The measuring needs a JVM that can count the memory allocated by each thread (such as the Oracle and OpenJDK JVMs).
+	 *
+	 * @param bytes The most bytes a game tick or frame may allocate, or 0 (the default) to turn the measuring off
+	 * @param failOnExceed True to throw an exception when the budget is exceeded, false to report it
+	 */
+	public void setAllocationBudget(long bytes, boolean failOnExceed)
+	{
+		if (bytes > 0)
+		{
+			synchronized (Game.class)
+			{
+				if (allocationBean == null)
+				{
+					java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+					if (!(bean instanceof com.sun.management.ThreadMXBean) ||
+							!((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported())
+						throw new UnsupportedOperationException("This JVM can not measure the memory allocated by a thread");
+					allocationBean = (com.sun.management.ThreadMXBean)bean;
+					allocationBean.setThreadAllocatedMemoryEnabled(true);
+				}
+			}
+		}
+		allocationBudgetFail = failOnExceed;
+		allocationBudget = Math.max(0, bytes);
+	}
+	
+	/**
+	 * Returns the allocation budget
+	 *
+	 * @return The most bytes a game tick or frame may allocate, 0 if the measuring is off
+	 */
+	public long getAllocationBudget()
+	{
+		return(allocationBudget);
+	}
+	
+	/**
+	 * Returns the number of bytes the current thread has allocated so far, or -1 if the allocation budget is off
+	 */
+	private long allocatedBytes()
+	{
+		if (allocationBudget == 0)
+			return(-1);
+		return(allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId()));
+	}
+	
+	/**
+	 * Records the bytes allocated since the given count and checks them against the allocation budget
+	 *
+	 * @param start The count returned by allocatedBytes() at the start
+	 * @param h The histogram to record into
+	 * @param what What allocated the memory, for the report
+	 */
+	private void checkAllocation(long start, TimingHistogram h, String what)
+	{
+		long budget = allocationBudget;
+		if (start < 0 || budget == 0)
+			return;
+		
+		long bytes = allocatedBytes() - start;
+		h.record(bytes);
+		if (bytes <= budget || tickCount <= requestedGFPS)
+			return;
+		
+		timerStats.allocationBudgetExceeded.incrementAndGet();
+		String msg = what + " " + tickCount + " allocated " + bytes + " bytes, over the budget of " + budget + " bytes";
+		if (allocationBudgetFail)
+			throw new IllegalStateException(msg);
+		System.err.println(msg);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Sets the seed of the game's random number generator (see getRandom()). The same seed and the same input always
+	 * give the same game, this is how an InputReplayer plays back a recorded session
+	 *
+	 * @param seed The new seed
+	 */
+	public synchronized void setRandomSeed(long seed)
+	{
+		randomSeed = seed;
+		random.setSeed(seed);
+	}
+	
+	/**
+	 * Returns the seed the game's random number generator was last seeded with
+	 *
+	 * @return The seed
+	 */
+	public long getRandomSeed()
+	{
+		return(randomSeed);
+	}
+	
+	/**
+	 * Returns the game's random number generator. Use this instead of Math.random() in the game logic so that recorded
+	 * sessions can be played back exactly (see InputRecorder)
+	 *
+	 * @return The random number generator
+	 */
+	public Random getRandom()
+	{
+		return(random);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * This class is purely used to call the load() method for loading GameTextures and loadFont() for initilising fonts that will be used in the game.
+	 * Please note that some very large images might not load depending on your graphics hardware. For this reason it is suggested that you use an image editor to
+	 * breakup your large image into smaller ones and load those individually.
+	 */
+	public class ResourceLoader
+	{
+		GameRenderer.FontRenderer fontR;
+		GL gl;
+		
+		//==============================================================================
+		
+		private ResourceLoader(GL glContext, GameRenderer.FontRenderer f)
+		{
+			fontR = f;
+			gl = glContext;
+		}
+		
+		//==============================================================================
+		
+		/**
+		 * Initializes a font for rendering during the renderStep. In order to use a font during rendering you need to load up the font with this method 
+		 * and then use it with the draw method in GameDrawer
+		 */
+		public GameFont loadFont(Font f)
+		{
+			return(fontR.addGameFont(f));
+		}
+		
+		//==============================================================================
+	
+		// taken from http://forum.java.sun.com/thread.jspa?threadID=5197213&tstart=45
+		/**
+		 * Texture loader utilizes JOGL's provided utilities to produce a texture.
+		 *
+		 * @param fileName relative filename from execution point
+		 * @return a GameTexture ready for use or null is loading failed
+		 */
+		public GameTexture loadTexture(String fileName)
+		{
+			if (gl == null)
+				return(loadHeadlessTexture(fileName));
+			
+			GameTexture gt = null;
+			try
+			{
+				gt = new GameTexture();
+				TextureData textD = TextureIO.newTextureData(gl.getGLProfile(), new File(fileName), true, null);
+				gt.w = textD.getWidth();
+				gt.h = textD.getHeight();
+				gt.t = TextureIO.newTexture(textD);
+				gt.bbuffer = ((ByteBuffer)textD.getBuffer()).asReadOnlyBuffer();
+				gt.buildAlphaMask();
+				
+				gt.t.setTexParameteri(gl, GL.GL_TEXTURE_MAG_FILTER, GL.GL_NEAREST);
+				gt.t.setTexParameteri(gl, GL.GL_TEXTURE_MIN_FILTER, GL.GL_NEAREST);
+			}
+			catch(Exception e)
+			{
+				System.err.println(e.getMessage());
+				System.err.println("Error loading texture " + fileName);
+			}
+			return(gt);
+		}
+		
+		//==============================================================================
+		
+		/**
+		 * Loads a set of small textures packed together into shared atlas textures, 1024x1024 pixels with 1 pixel of padding
+		 * (see loadTextures(String [], int, int))
+		 *
+		 * @param fileNames relative filenames from execution point
+		 * @return the GameTextures in the same order as the file names, an entry is null if that texture failed to load
+		 */
+		public GameTexture [] loadTextures(String [] fileNames)
+		{
+			return(loadTextures(fileNames, 1024, 1));
+		}
+		
+		/**
+		 * Loads a set of small textures packed together into shared atlas textures (pages). Each GameTexture is a region of a page
+		 * and is used like a texture loaded with loadTexture(), e.g. with GameObject.addTexture(). As the sprites share a page's
+		 * OpenGL texture they are drawn in the same batch, so load the textures that are drawn together in the same call.
+		 * <p>
+		 * The textures are packed tallest first and a new page is started when one is full. The edge pixels of each texture are
+		 * repeated into the padding around it, so neighbouring textures do not bleed into each other when drawn scaled or at
+		 * fractional positions. A texture too big for a page gets a texture of its own.
+		 *
+		 * @param fileNames relative filenames from execution point
+		 * @param pageSize The width and height of the pages, in pixels (a power of two)
+		 * @param padding The pixels of padding around each texture
+		 * @return the GameTextures in the same order as the file names, an entry is null if that texture failed to load
+		 */
+		public GameTexture [] loadTextures(String [] fileNames, int pageSize, int padding)
+		{
+			GameTexture [] textures = new GameTexture [fileNames.length];
+			final BufferedImage [] images = new BufferedImage [fileNames.length];
+			Integer [] order = new Integer [fileNames.length];
+			for (int i = 0 ; i < fileNames.length ; i++)
+			{
+				order[i] = i;
+				try
+				{
+					images[i] = readImage(fileNames[i]);
+				}
+				catch(Exception e)
+				{
+					System.err.println(e.getMessage());
+					System.err.println("Error loading texture " + fileNames[i]);
+				}
+			}
+			
+			// Tallest first packs with the least wasted space
+			Arrays.sort(order, new Comparator<Integer>()
+			{
+				public int compare(Integer a, Integer b)
+				{
+					int ha = images[a] == null ? 0 : images[a].getHeight();
+					int hb = images[b] == null ? 0 : images[b].getHeight();
+					return(hb - ha);
+				}
+			});
+			
+			ArrayList<AtlasPacker> pages = new ArrayList<AtlasPacker>();
+			int [] page = new int [fileNames.length];
+			int [] x = new int [fileNames.length];
+			int [] y = new int [fileNames.length];
+			int [] pos = new int [2];
+			for (int i : order)
+			{
+				if (images[i] == null)
+					continue;
+				
+				int w = images[i].getWidth() + padding * 2, h = images[i].getHeight() + padding * 2;
+				if (w > pageSize || h > pageSize)
+				{
+					textures[i] = toTexture(images[i]);
+					continue;
+				}
+				
+				page[i] = -1;
+				for (int p = 0 ; p < pages.size() && page[i] < 0 ; p++)
+					if (pages.get(p).pack(w, h, pos))
+						page[i] = p;
+				if (page[i] < 0)
+				{
+					AtlasPacker packer = new AtlasPacker(pageSize, pageSize);
+					packer.pack(w, h, pos);
+					pages.add(packer);
+					page[i] = pages.size() - 1;
+				}
+				x[i] = pos[0] + padding;
+				y[i] = pos[1] + padding;
+			}
+			
+			for (int p = 0 ; p < pages.size() ; p++)
+			{
+				// The page is cut down to the power of two height it needs
+				int pageW = pageSize, pageH = 1;
+				while (pageH < pages.get(p).getUsedHeight())
+					pageH *= 2;
+				
+				int [] argb = new int [pageW * pageH];
+				for (int i = 0 ; i < fileNames.length ; i++)
+					if (images[i] != null && textures[i] == null && page[i] == p)
+						copyPadded(images[i], argb, pageW, x[i], y[i], padding);
+				
+				Texture pageTexture = null;
+				if (gl != null)
+					pageTexture = newTexture(toRGBA(argb, pageW, pageH), pageW, pageH);
+				
+				for (int i = 0 ; i < fileNames.length ; i++)
+				{
+					if (images[i] != null && textures[i] == null && page[i] == p)
+					{
+						GameTexture gt = toRegion(images[i]);
+						gt.t = pageTexture;
+						gt.pageW = pageW;
+						gt.pageH = pageH;
+						gt.regionX = x[i];
+						gt.regionY = pageH - (y[i] + gt.h); // The texture coords start at the bottom
+						textures[i] = gt;
+					}
+				}
+			}
+			return(textures);
+		}
+		
+		/**
+		 * Makes a GameTexture out of an image, with its own OpenGL texture
+		 */
+		private GameTexture toTexture(BufferedImage img)
+		{
+			GameTexture gt = toRegion(img);
+			if (gl != null)
+				gt.t = newTexture(gt.bbuffer, gt.w, gt.h);
+			return(gt);
+		}
+		
+		/**
+		 * Makes a GameTexture out of an image, without an OpenGL texture. Its size, byte data and alpha mask are the image's
+		 */
+		private GameTexture toRegion(BufferedImage img)
+		{
+			GameTexture gt = new GameTexture();
+			gt.w = img.getWidth();
+			gt.h = img.getHeight();
+			gt.bbuffer = toRGBA(img.getRGB(0, 0, gt.w, gt.h, null, 0, gt.w), gt.w, gt.h).asReadOnlyBuffer();
+			gt.buildAlphaMask();
+			return(gt);
+		}
+		
+		/**
+		 * Creates an OpenGL texture out of pixel data laid out as a texture's byte data, RGBA starting at the bottom left corner
+		 */
+		private Texture newTexture(ByteBuffer rgba, int w, int h)
+		{
+			ByteBuffer pixels = ByteBuffer.allocateDirect(w * h * 4);
+			pixels.put(rgba.duplicate());
+			pixels.flip();
+			
+			Texture t = TextureIO.newTexture(new TextureData(gl.getGLProfile(), GL.GL_RGBA, w, h, 0, GL.GL_RGBA, GL.GL_UNSIGNED_BYTE,
+					false, false, false, pixels, null));
+			t.setTexParameteri(gl, GL.GL_TEXTURE_MAG_FILTER, GL.GL_NEAREST);
+			t.setTexParameteri(gl, GL.GL_TEXTURE_MIN_FILTER, GL.GL_NEAREST);
+			return(t);
+		}
+	}
+	
+	/**
+	 * Copies an image into an atlas page and repeats its edge pixels out into the padding around it
+	 *
+	 * @param img The image to copy
+	 * @param page The page's pixels, ARGB starting at the top left corner
+	 * @param pageW The width of the page
+	 * @param x The x-coordinate of the image's left edge on the page
+	 * @param y The y-coordinate of the image's top edge on the page
+	 * @param padding The pixels of padding around the image
+	 */
+	private static void copyPadded(BufferedImage img, int [] page, int pageW, int x, int y, int padding)
+	{
+		int w = img.getWidth(), h = img.getHeight();
+		int [] row = new int [w];
+		for (int sy = -padding ; sy < h + padding ; sy++)
+		{
+			img.getRGB(0, Math.min(Math.max(sy, 0), h - 1), w, 1, row, 0, w);
+			int base = (y + sy) * pageW + x;
+			System.arraycopy(row, 0, page, base, w);
+			for (int p = 1 ; p <= padding ; p++)
+			{
+				page[base - p] = row[0];
+				page[base + w - 1 + p] = row[w - 1];
+			}
+		}
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Loads only the pixel data of a texture (no OpenGL texture is created). Used when the game is running headless.
+	 * The byte buffer is laid out the same way as a loaded texture, RGBA starting at the bottom left corner.
+	 *
+	 * @param fileName relative filename from execution point
+	 * @return a GameTexture without an OpenGL texture or null is loading failed
+	 */
+	private static GameTexture loadHeadlessTexture(String fileName)
+	{
+		try
+		{
+			return(decodeHeadlessTexture(fileName));
+		}
+		catch(Exception e)
+		{
+			System.err.println(e.getMessage());
+			System.err.println("Error loading texture " + fileName);
+			return(null);
+		}
+	}
+	
+	/**
+	 * Decodes an image file into the pixel data of a texture (see loadHeadlessTexture())
+	 *
+	 * @param fileName relative filename from execution point
+	 * @return a GameTexture without an OpenGL texture
+	 * @throws IOException If the file could not be read or decoded
+	 */
+	private static GameTexture decodeHeadlessTexture(String fileName) throws IOException
+	{
+		BufferedImage img = readImage(fileName);
+		
+		GameTexture gt = new GameTexture();
+		gt.w = img.getWidth();
+		gt.h = img.getHeight();
+		gt.bbuffer = toRGBA(img.getRGB(0, 0, gt.w, gt.h, null, 0, gt.w), gt.w, gt.h).asReadOnlyBuffer();
+		gt.buildAlphaMask();
+		return(gt);
+	}
+	
+	/**
+	 * Reads an image file
+	 *
+	 * @param fileName relative filename from execution point
+	 * @return The decoded image
+	 * @throws IOException If the file could not be read or decoded
+	 */
+	private static BufferedImage readImage(String fileName) throws IOException
+	{
+		BufferedImage img = ImageIO.read(new File(fileName));
+		if (img == null)
+			throw new IOException("Unsupported image format");
+		return(img);
+	}
+	
+	/**
+	 * Lays out ARGB pixels the way the pixel data of a texture is, RGBA starting at the bottom left corner
+	 *
+	 * @param argb The pixels, starting at the top left corner
+	 * @param w The width of the image
+	 * @param h The height of the image
+	 * @return The pixel data
+	 */
+	private static ByteBuffer toRGBA(int [] argb, int w, int h)
+	{
+		ByteBuffer bb = ByteBuffer.allocate(w * h * 4);
+		for (int y = h - 1 ; y >= 0 ; y--)
+		{
+			for (int x = 0 ; x < w ; x++)
+			{
+				int pixel = argb[y * w + x];
+				bb.put((byte)(pixel >> 16));
+				bb.put((byte)(pixel >> 8));
+				bb.put((byte)pixel);
+				bb.put((byte)(pixel >> 24));
+			}
+		}
+		bb.flip();
+		return(bb);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Runs a task on a background worker thread so that it does not hold up the game ticks (e.g. loading a level or path finding).
+	 * <p>
+	 * When the task has finished its result is handed to the listener on the logic thread, at the start of a later game tick (before
+	 * the logicStep()). To keep the game ticks steady only so many results are handed over each game tick, see setJobCompletionBudget().
+	 * <p>
+	 * The task must not touch the game's state or OpenGL while it runs, only the listener may.
+	 *
+	 * @param task The work to do on the worker thread
+	 * @param listener Receives the result on the logic thread, may be null if the result is not needed
+	 * @throws RejectedExecutionException If the game has been ended
+	 */
+	public <T> void submitJob(final Callable<T> task, final GameJobListener<T> listener)
+	{
+		startJob(new Runnable()
+		{
+			public void run()
+			{
+				CompletedJob<T> job = new CompletedJob<T>(listener);
+				try
+				{
+					job.result = task.call();
+				}
+				catch (Exception e)
+				{
+					job.error = e;
+				}
+				completedJobs.add(job);
+			}
+		});
+	}
+	
+	/**
+	 * Loads a texture in the background while the game is running. The image file is decoded on a worker thread, the texture is then
+	 * created on the GL thread before the next frame is drawn and finally the GameTexture is handed to the listener on the logic thread
+	 * (see submitJob()). When the game is running headless only the pixel data is loaded, as with ResourceLoader.loadTexture().
+	 *
+	 * @param fileName relative filename from execution point
+	 * @param listener Receives the loaded GameTexture on the logic thread
+	 * @throws RejectedExecutionException If the game has been ended
+	 */
+	public void loadTextureAsync(final String fileName, final GameJobListener<GameTexture> listener)
+	{
+		startJob(new Runnable()
+		{
+			public void run()
+			{
+				CompletedJob<GameTexture> job = new CompletedJob<GameTexture>(listener);
+				try
+				{
+					if (headless)
+					{
+						job.result = decodeHeadlessTexture(fileName);
+					}
+					else
+					{
+						// Creating the texture needs the GL context, so it is left for the GL thread
+						TextureData textD = TextureIO.newTextureData(glProfile, new File(fileName), true, null);
+						textureUploads.add(new TextureUpload(job, textD));
+						return;
+					}
+				}
+				catch (Exception e)
+				{
+					job.error = e;
+				}
+				completedJobs.add(job);
+			}
+		});
+	}
+	
+	/**
+	 * Sets how many finished jobs may be handed to their listeners at the start of each game tick, so that a burst of finished jobs does
+	 * not hold up the game tick. At least one finished job is always handed over per game tick.
+	 *
+	 * @param maxJobs The most finished jobs to hand over per game tick, or 0 for no limit
+	 * @param microseconds The most time to spend handing over finished jobs per game tick, or 0 for no limit (the default is 2000)
+	 */
+	public void setJobCompletionBudget(int maxJobs, int microseconds)
+	{
+		jobCompletionLimit = Math.max(0, maxJobs);
+		jobCompletionBudget = (microseconds <= 0 ? Long.MAX_VALUE / 2 : microseconds * 1000L);
+	}
+	
+	/**
+	 * Returns the number of jobs that have been submitted but not yet handed to their listeners
+	 *
+	 * @return The number of outstanding jobs
+	 */
+	public int getPendingJobs()
+	{
+		return(pendingJobs.get());
+	}
+	
+	/**
+	 * Counts a job as pending and hands it to the worker threads. A job turned away once the game has ended is not counted
 	 */
-	public void endGame()
+	private void startJob(Runnable work)
 	{
-		timer.endGame();
-		gameAudio.KillAllData();
+		pendingJobs.incrementAndGet();
+		try
+		{
+			getJobPool().execute(work);
+		}
+		catch (RejectedExecutionException e)
+		{
+			pendingJobs.decrementAndGet();
+			throw e;
+		}
 	}
 	
-	//==============================================================================
-	
 	/**
-	 * This class is purely used to call the load() method for loading GameTextures and loadFont() for initilising fonts that will be used in the game.
-	 * Please note that some very large images might not load depending on your graphics hardware. For this reason it is suggested that you use an image editor to
-	 * breakup your large image into smaller ones and load those individually.
+	 * Returns the worker threads, starting them the first time. They are daemon threads so they never keep the game running
+	 *
+	 * @throws RejectedExecutionException If the game has been ended
 	 */
-	public class ResourceLoader
+	private synchronized ExecutorService getJobPool()
 	{
-		GameRenderer.FontRenderer fontR;
-		GL gl;
-		
-		//==============================================================================
-		
-		private ResourceLoader(GL glContext, GameRenderer.FontRenderer f)
+		if (jobsShutdown)
+			throw new RejectedExecutionException("The game has been ended");
+		if (jobPool == null)
 		{
-			fontR = f;
-			gl = glContext;
+			int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+			jobPool = Executors.newFixedThreadPool(workers, new ThreadFactory()
+			{
+				private int count = 0;
+				
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "GameJob-" + (count++));
+					t.setDaemon(true);
+					return(t);
+				}
+			});
 		}
+		return(jobPool);
+	}
+	
+	/**
+	 * Hands finished jobs to their listeners, within the job completion budget. Called on the logic thread at the start of each game tick
+	 */
+	private void deliverCompletedJobs()
+	{
+		if (completedJobs.isEmpty())
+			return;
 		
-		//==============================================================================
-		
-		/**
-		 * Initializes a font for rendering during the renderStep. In order to use a font during rendering you need to load up the font with this method 
-		 * and then use it with the draw method in GameDrawer
-		 */
-		public GameFont loadFont(Font f)
+		long deadline = System.nanoTime() + jobCompletionBudget;
+		int limit = jobCompletionLimit;
+		int delivered = 0;
+		CompletedJob<?> job;
+		while ((limit == 0 || delivered < limit) && (job = completedJobs.poll()) != null)
 		{
-			return(fontR.addGameFont(f));
+			pendingJobs.decrementAndGet();
+			delivered++;
+			job.deliver();
+			if (System.nanoTime() >= deadline)
+				break;
 		}
-		
-		//==============================================================================
+	}
 	
-		// taken from http://forum.java.sun.com/thread.jspa?threadID=5197213&tstart=45
-		/**
-		 * Texture loader utilizes JOGL's provided utilities to produce a texture.
-		 *
-		 * @param fileName relative filename from execution point
-		 * @return a GameTexture ready for use or null is loading failed
-		 */
-		public GameTexture loadTexture(String fileName)
+	/**
+	 * Creates the textures that have been decoded by loadTextureAsync(). Called on the GL thread before each frame is drawn
+	 */
+	private void uploadTextures(GL gl)
+	{
+		TextureUpload upload;
+		while ((upload = textureUploads.poll()) != null)
 		{
-			GameTexture gt = null;
+			CompletedJob<GameTexture> job = upload.job;
 			try
 			{
-				gt = new GameTexture();
-				TextureData textD = TextureIO.newTextureData(gl.getGLProfile(), new File(fileName), true, null);
-				gt.w = textD.getWidth();
-				gt.h = textD.getHeight();
-				gt.t = TextureIO.newTexture(textD);
-				gt.bbuffer = ((ByteBuffer)textD.getBuffer()).asReadOnlyBuffer();
+				GameTexture gt = new GameTexture();
+				gt.w = upload.data.getWidth();
+				gt.h = upload.data.getHeight();
+				gt.t = TextureIO.newTexture(upload.data);
+				gt.bbuffer = ((ByteBuffer)upload.data.getBuffer()).asReadOnlyBuffer();
+				gt.buildAlphaMask();
 				
 				gt.t.setTexParameteri(gl, GL.GL_TEXTURE_MAG_FILTER, GL.GL_NEAREST);
 				gt.t.setTexParameteri(gl, GL.GL_TEXTURE_MIN_FILTER, GL.GL_NEAREST);
+				job.result = gt;
 			}
-			catch(Exception e)
+			catch (Exception e)
 			{
-				System.err.println(e.getMessage());
-				System.err.println("Error loading texture " + fileName);
+				job.error = e;
 			}
-			return(gt);
+			completedJobs.add(job);
+		}
+	}
+	
+	/**
+	 * A finished job waiting to be handed to its listener
+	 */
+	private static class CompletedJob<T>
+	{
+		GameJobListener<T> listener;
+		T result;
+		Exception error;
+		
+		CompletedJob(GameJobListener<T> listener)
+		{
+			this.listener = listener;
+		}
+		
+		void deliver()
+		{
+			if (listener == null)
+			{
+				if (error != null)
+					error.printStackTrace();
+			}
+			else if (error != null)
+				listener.jobFailed(error);
+			else
+				listener.jobCompleted(result);
+		}
+	}
+	
+	/**
+	 * A texture decoded by a worker thread waiting to be created on the GL thread
+	 */
+	private static class TextureUpload
+	{
+		CompletedJob<GameTexture> job;
+		TextureData data;
+		
+		TextureUpload(CompletedJob<GameTexture> job, TextureData data)
+		{
+			this.job = job;
+			this.data = data;
 		}
 	}
 	
@@ -192,9 +1261,10 @@ public abstract class Game
 	
 		gl.glEnable(GL.GL_BLEND);
 		
+		glProfile = gl.getGLProfile();
 		initStep(new ResourceLoader(gl, fontR));
 		initialised = true;
-		timer.start();
+		startTimer();
 	}
 	
 	/**
@@ -249,6 +1319,21 @@ public abstract class Game
 		
 		GL gl;
 		
+		// When set GameObjects are added to this batch rather than drawn one at a time (see setSpriteBatching())
+		SpriteBatch batch;
+		
+		// When set everything is recorded into this snapshot instead of being drawn
+		RenderSnapshot snapshot;
+		
+		// Render interpolation for this frame
+		private float alpha = 1.0f;
+		private boolean interpolate = false;
+		
+		// Viewport culling for this frame, see Game.setViewportCulling()
+		private boolean cull = false;
+		private float viewW, viewH;
+		private int culled = 0;
+		
 		//==============================================================================
 		
 		private GameDrawer(GL g)
@@ -256,6 +1341,21 @@ public abstract class Game
 			gl = g;
 		}
 		
+		private GameDrawer(RenderSnapshot s)
+		{
+			snapshot = s;
+		}
+		
+		/**
+		 * Returns how far (between 0.0 and 1.0) this frame is between the last game tick and the next one. See Game.setInterpolation()
+		 *
+		 * @return The interpolation alpha
+		 */
+		public float getInterpolationAlpha()
+		{
+			return(alpha);
+		}
+		
 		/**
 		 * Sets the values to which this renderer will offset anything it draws.
 		 *
@@ -278,7 +1378,7 @@ public abstract class Game
 		{
 			for (int i = 0 ; i < 4 ; i++)
 				lastSetColour[i] = c[i];
-			gl.getGL2().glColor4f(c[0], c[1], c[2], c[3]);
+			glColour(c[0], c[1], c[2], c[3]);
 		}
 	
 		/**
@@ -296,7 +1396,20 @@ public abstract class Game
 			lastSetColour[1] = g;
 			lastSetColour[2] = b;
 			lastSetColour[3] = a;
-			gl.getGL2().glColor4f(r, g, b, a);
+			glColour(r, g, b, a);
+		}
+		
+		/**
+		 * Sets the colour OpenGL draws in (or the snapshot records in)
+		 */
+		private void glColour(float r, float g, float b, float a)
+		{
+			if (snapshot != null)
+				snapshot.setColour(r, g, b, a);
+			else if (batch != null)
+				batch.setColour(r, g, b, a);
+			else
+				gl.getGL2().glColor4f(r, g, b, a);
 		}
 		
 		/**
@@ -308,7 +1421,20 @@ public abstract class Game
 		 */
 		public void draw(GameObject o, float depth)
 		{
-			o.draw(gl, offx, offy, depth);
+			if (snapshot != null)
+			{
+				if (!o.record(snapshot, offx, offy, depth, interpolate, tickCount, cull, viewW, viewH))
+					culled++;
+				return;
+			}
+			
+			o.prepareDraw(interpolate, tickCount, alpha);
+			if (cull && !o.drawnInView(offx, offy, viewW, viewH))
+				culled++;
+			else if (batch != null)
+				o.draw(batch, offx, offy, depth);
+			else
+				o.draw(gl, offx, offy, depth);
 		}
 	
 		/**
@@ -323,7 +1449,7 @@ public abstract class Game
 		 */
 		public void draw(GameObject o, float[] c, float depth)
 		{
-			o.draw(gl, offx, offy, c[0], c[1], c[2], c[3], depth);
+			draw(o, c[0], c[1], c[2], c[3], depth);
 		}
 		
 		/**
@@ -341,7 +1467,103 @@ public abstract class Game
 		 */
 		public void draw(GameObject o, float r, float g, float b, float a, float depth)
 		{
-			o.draw(gl, offx, offy, r, g, b, a, depth);
+			if (snapshot != null)
+			{
+				snapshot.setColour(r, g, b, a);
+				if (!o.record(snapshot, offx, offy, depth, interpolate, tickCount, cull, viewW, viewH))
+					culled++;
+				return;
+			}
+			
+			o.prepareDraw(interpolate, tickCount, alpha);
+			if (cull && !o.drawnInView(offx, offy, viewW, viewH))
+			{
+				// The colour is left set, as if the object had been drawn
+				glColour(r, g, b, a);
+				culled++;
+			}
+			else if (batch != null)
+			{
+				batch.setColour(r, g, b, a);
+				o.draw(batch, offx, offy, depth);
+			}
+			else
+			{
+				o.draw(gl, offx, offy, r, g, b, a, depth);
+			}
+		}
+		
+		/**
+		 * Draws a TileMap at a specified depth with whatever colour is currently set. Only the chunks of the map inside the viewport
+		 * are drawn (see Game.setViewportCulling())
+		 *
+		 * @param map The TileMap to be drawn
+		 * @param depth The depth at which to draw the tiles, a lower number means they will be behind other objects
+		 */
+		public void draw(TileMap map, float depth)
+		{
+			if (snapshot != null)
+			{
+				snapshot.addTileMap(map, offx, offy, depth, cull, viewW, viewH);
+				return;
+			}
+			if (batch != null)
+				batch.flush();
+			map.draw(gl, offx, offy, depth, cull, viewW, viewH);
+		}
+		
+		//==============================================================================
+		
+		/**
+		 * Tests whether a GameObject, at its current position and with the current world offset, lies at least partly inside the
+		 * viewport. A rotated object is tested with the circle it rotates in. Everything is visible until the viewport's size is known
+		 *
+		 * @param o The GameObject to test
+		 * @return True if the object would be drawn
+		 */
+		public boolean isVisible(GameObject o)
+		{
+			return(!viewPortSet || o.inView(offx, offy, viewW, viewH));
+		}
+		
+		/**
+		 * Finds the GameObjects that lie at least partly inside the viewport with the current world offset (see isVisible())
+		 *
+		 * @param objects The objects to test
+		 * @return A new list of the visible objects, in the same order
+		 */
+		public <T extends GameObject> List<T> getVisibleObjects(List<T> objects)
+		{
+			return(getVisibleObjects(objects, new ArrayList<T>()));
+		}
+		
+		/**
+		 * Finds the GameObjects that lie at least partly inside the viewport with the current world offset without creating a new
+		 * list (see isVisible())
+		 *
+		 * @param objects The objects to test
+		 * @param out The list the visible objects are added to, in the same order
+		 * @return The given list
+		 */
+		public <T extends GameObject> List<T> getVisibleObjects(List<T> objects, List<T> out)
+		{
+			for (int i = 0 ; i < objects.size() ; i++)
+			{
+				T o = objects.get(i);
+				if (isVisible(o))
+					out.add(o);
+			}
+			return(out);
+		}
+		
+		/**
+		 * Returns how many GameObjects have been culled so far this frame, as they were outside the viewport
+		 *
+		 * @return The number of objects not drawn
+		 */
+		public int getCulledCount()
+		{
+			return(culled);
 		}
 		
 		//==============================================================================
@@ -390,6 +1612,13 @@ public abstract class Game
 		 */
 		public void draw(int type, Point2D.Float[] points, float depth)
 		{
+			if (snapshot != null)
+			{
+				snapshot.addShape(type, points, offx, offy, null, depth);
+				return;
+			}
+			if (batch != null)
+				batch.flush();
 			gl.getGL2().glBegin(type);
 			for (int i = 0 ; i < points.length; i++)
 			{
@@ -415,13 +1644,22 @@ public abstract class Game
 		 */
 		public void draw(int type, Point2D.Float [] points, float [][] c, float depth)
 		{
-			gl.getGL2().glBegin(type);
-			for (int i = 0 ; i < points.length; i++)
+			if (snapshot != null)
 			{
-				gl.getGL2().glColor4f(c[i][0], c[i][1], c[i][2], c[i][3]);
-				gl.getGL2().glVertex3f(points[i].x+offx, points[i].y+offy, depth);
+				snapshot.addShape(type, points, offx, offy, c, depth);
+			}
+			else
+			{
+				if (batch != null)
+					batch.flush();
+				gl.getGL2().glBegin(type);
+				for (int i = 0 ; i < points.length; i++)
+				{
+					gl.getGL2().glColor4f(c[i][0], c[i][1], c[i][2], c[i][3]);
+					gl.getGL2().glVertex3f(points[i].x+offx, points[i].y+offy, depth);
+				}
+				gl.getGL2().glEnd();
 			}
-			gl.getGL2().glEnd();
 			setColour(c[points.length-1]);
 		}
 		
@@ -561,15 +1799,97 @@ public abstract class Game
 		 */
 		public void draw(GameFont gf, String text, Point2D.Float point, float r, float g, float b, float a, float depth, float scale)
 		{
-			fr.registerFontRender(gf, text, point.x+offx, point.y+offy, r, g, b, a, depth, scale);
+			if (snapshot != null)
+				snapshot.addText(gf, text, point.x+offx, point.y+offy, r, g, b, a, depth, scale);
+			else
+				fr.registerFontRender(gf, text, point.x+offx, point.y+offy, r, g, b, a, depth, scale);
 		}
 	}
 	
 	final void renderGame(GL g)
 	{
 		//System.out.println("Game.renderGame() called");
-		if (initialised)
-			renderStep(new GameDrawer(g));
+		if (!initialised)
+			return;
+		
+		if (!textureUploads.isEmpty())
+			uploadTextures(g);
+		
+		long allocated = allocatedBytes();
+		SpriteBatch batch = spriteBatching ? spriteBatch : null;
+		if (batch != null)
+		{
+			batch.sorting = spriteSorting;
+			batch.begin(g);
+		}
+		if (threadingMode == THREADING_SEPARATE_RENDER)
+		{
+			RenderSnapshot s = snapshots.acquireLatest();
+			if (s != null)
+				s.replay(g, fr, interpolation ? computeAlpha() : 1.0f, batch);
+		}
+		else
+		{
+			// The drawer is reused from frame to frame
+			if (directDrawer == null)
+				directDrawer = new GameDrawer(g);
+			GameDrawer drawer = directDrawer;
+			drawer.gl = g;
+			drawer.batch = batch;
+			drawer.offx = 0;
+			drawer.offy = 0;
+			for (int i = 0 ; i < 4 ; i++)
+				drawer.lastSetColour[i] = 0.0f;
+			drawer.interpolate = interpolation;
+			drawer.alpha = interpolation ? computeAlpha() : 1.0f;
+			setView(drawer);
+			renderStep(drawer, drawer.alpha);
+		}
+		
+		// The text is drawn after this, so the last sprites must be drawn first
+		if (batch != null)
+			batch.end();
+		checkAllocation(allocated, timerStats.frameAllocation, "Frame after game tick");
+	}
+	
+	/**
+	 * Tells a drawer the viewport to cull against for this frame
+	 */
+	private void setView(GameDrawer drawer)
+	{
+		Dimension view = viewPortDimension;
+		drawer.cull = viewportCulling && viewPortSet;
+		drawer.viewW = view.width;
+		drawer.viewH = view.height;
+		drawer.culled = 0;
+	}
+	
+	/**
+	 * Runs the renderStep against a recording GameDrawer and publishes the snapshot for the render thread.
+	 * Called on the logic thread after the game ticks when rendering on a separate thread
+	 */
+	final synchronized void recordSnapshot()
+	{
+		if (!initialised)
+			return;
+		
+		long allocated = allocatedBytes();
+		RenderSnapshot s = snapshots.beginRecord();
+		if (recordingDrawer == null)
+			recordingDrawer = new GameDrawer(s);
+		recordingDrawer.snapshot = s;
+		recordingDrawer.offx = 0;
+		recordingDrawer.offy = 0;
+		for (int i = 0 ; i < 4 ; i++)
+			recordingDrawer.lastSetColour[i] = 0.0f;
+		
+		// The render thread does the interpolating, so the recording is always of the current game tick
+		recordingDrawer.interpolate = interpolation;
+		recordingDrawer.alpha = 1.0f;
+		setView(recordingDrawer);
+		renderStep(recordingDrawer, 1.0f);
+		snapshots.publish();
+		checkAllocation(allocated, timerStats.tickAllocation, "Recording of game tick");
 	}
 	
 	/**
@@ -580,6 +1900,21 @@ public abstract class Game
 	 */
 	public abstract void renderStep(GameDrawer drawer);
 	
+	/**
+	 * This is the renderStep that the game engine actually calls, it just calls renderStep(GameDrawer). Over-ride this instead if
+	 * you want to interpolate things yourself when render interpolation is enabled (see setInterpolation()), for example the world offset.
+	 * <p>
+	 * When rendering on a separate thread the render step is recorded once per game tick and the alpha is always 1.0 (the
+	 * GameObjects are still interpolated by the render thread).
+	 *
+	 * @param drawer The interface to OpenGL rendering capabilities. Use this to draw your game objects
+	 * @param alpha How far (between 0.0 and 1.0) this frame is between the last game tick and the next one
+	 */
+	public void renderStep(GameDrawer drawer, float alpha)
+	{
+		renderStep(drawer);
+	}
+	
 	//==============================================================================
 	
 	/**
@@ -744,7 +2079,12 @@ public abstract class Game
 		//System.out.println("Game.logicGame() called");
 		if (initialised)
 		{
+			long allocated = allocatedBytes();
+			deliverCompletedJobs();
+			if (inputRecorder != null)
+				inputRecorder.recordTick();
 			logicStep(theGamesInputInterface);
+			tickCount++;
 			
 			scrollAmount = 0;
 			scrollType = 0;
@@ -765,6 +2105,7 @@ public abstract class Game
 				int mb = mouseClickedStack.pop();
 				mouseClickedVec[mb] = false;
 			}
+			checkAllocation(allocated, timerStats.tickAllocation, "Game tick");
 		}
 	}
 	
@@ -777,6 +2118,148 @@ public abstract class Game
 	
 	//==============================================================================
 	
+	/**
+	 * Calls doTimeStep() on every object in the list. Call this from the logicStep() instead of looping over the objects yourself.
+	 * <p>
+	 * Objects marked with GameObject.setIndependentUpdate(true) are updated first, in parallel chunks spread over several threads
+	 * when there are enough of them to make it worthwhile. All other objects are then updated one at a time on the logic thread,
+	 * in list order, so they always see the independent objects already updated and each other updated in a fixed order.
+	 * <p>
+	 * The list must not be changed while this runs (i.e. doTimeStep() must not add objects to it).
+	 *
+	 * @param objects The objects to update
+	 */
+	public void doTimeSteps(List<? extends GameObject> objects)
+	{
+		int count = objects.size();
+		if (updateObjects.length < count)
+			updateObjects = new GameObject [Math.max(count, updateObjects.length * 2)];
+		GameObject [] objs = objects.toArray(updateObjects);
+		
+		doTimeSteps(objs, count);
+		
+		// Don't hold on to objects that get removed from the game
+		for (int i = 0 ; i < count ; i++)
+			objs[i] = null;
+	}
+	
+	/**
+	 * Calls doTimeStep() on every object in the world, in the same way as doTimeSteps(List). Objects added to the world while this
+	 * runs (e.g. from a doTimeStep()) are queued and join the world once every object has been updated
+	 *
+	 * @param world The objects to update
+	 */
+	public void doTimeSteps(GameWorld world)
+	{
+		world.beginIteration();
+		try
+		{
+			doTimeSteps(world.array(), world.size());
+		}
+		finally
+		{
+			world.endIteration();
+		}
+	}
+	
+	/**
+	 * Updates the first count objects of the array, the independent objects first (see doTimeSteps(List))
+	 */
+	private void doTimeSteps(GameObject [] objs, int count)
+	{
+		// Fast objects remember where they start so their motion can be swept (see GameObject.setContinuousCollision())
+		for (int i = 0 ; i < count ; i++)
+			objs[i].beginSweep();
+		
+		boolean parallel = count >= UpdateTask.CHUNK_SIZE * 2 && updateThreads > 1;
+		if (parallel)
+		{
+			if (updatePool == null)
+				updatePool = new ForkJoinPool(updateThreads);
+			try
+			{
+				updatePool.invoke(new UpdateTask(objs, 0, count));
+			}
+			catch (RejectedExecutionException e)
+			{
+				// The pool has been shut down with the game timer (see shutdownUpdatePool()), nothing has been updated yet
+				parallel = false;
+			}
+		}
+		if (!parallel)
+		{
+			for (int i = 0 ; i < count ; i++)
+				if (objs[i].isIndependentUpdate())
+					objs[i].doTimeStep();
+		}
+		
+		for (int i = 0 ; i < count ; i++)
+			if (!objs[i].isIndependentUpdate())
+				objs[i].doTimeStep();
+	}
+	
+	/**
+	 * Stops the threads of the parallel update phase. Called on the logic thread once the game timer has stopped, so no game tick
+	 * is using them
+	 */
+	void shutdownUpdatePool()
+	{
+		ForkJoinPool pool = updatePool;
+		if (pool != null)
+			pool.shutdown();
+	}
+	
+	/**
+	 * Sets how many threads doTimeSteps() may use to update independent objects. Defaults to the number of processors.
+	 * This must be set before the first call to doTimeSteps()
+	 *
+	 * @param threads The number of threads, 1 updates everything on the logic thread
+	 */
+	public void setUpdateThreads(int threads)
+	{
+		if (updatePool != null)
+			throw new IllegalStateException("The number of update threads can not be changed once the objects have been updated");
+		updateThreads = Math.max(1, threads);
+	}
+	
+	/**
+	 * Updates the independent objects in a range of the list, splitting the range in half until it is small enough to do in one go
+	 */
+	private static class UpdateTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		// Objects per chunk, small chunks cost more in scheduling than they gain
+		static final int CHUNK_SIZE = 512;
+		
+		private GameObject [] objs;
+		private int start, end;
+		
+		UpdateTask(GameObject [] objs, int start, int end)
+		{
+			this.objs = objs;
+			this.start = start;
+			this.end = end;
+		}
+		
+		protected void compute()
+		{
+			if (end - start <= CHUNK_SIZE)
+			{
+				for (int i = start ; i < end ; i++)
+					if (objs[i].isIndependentUpdate())
+						objs[i].doTimeStep();
+			}
+			else
+			{
+				int mid = (start + end) >>> 1;
+				invokeAll(new UpdateTask(objs, start, mid), new UpdateTask(objs, mid, end));
+			}
+		}
+	}
+	
+	//==============================================================================
+	
 	/**
 	 * Returns the bounding box of the specified string with the given font (described by a GameFont object).
 	 * The Rectangle2D's position is at the origin.
@@ -812,6 +2295,7 @@ public abstract class Game
 	synchronized void setViewPortDimension(Dimension dimension)
 	{
 		this.viewPortDimension = new Dimension(dimension);
+		viewPortSet = true;
 	}
 
 	/**
@@ -2,6 +2,7 @@ package GameEngine;
 
 import java.nio.ByteBuffer;
 import java.util.Vector;
+import java.util.concurrent.Callable;
 
 import com.jogamp.openal.AL;
 import com.jogamp.openal.ALException;
@@ -39,7 +40,13 @@ public class GameAudio
 	private float[] listenerOri = { 0.0f, 0.0f, -1.0f, 0.0f, 1.0f, 0.0f };
 	
 	// The initialisation state (initially false...duh!!)
-	private boolean initialised = false;
+	private volatile boolean initialised = false;
+	
+	// Set while the audio is being loaded in the background
+	private volatile boolean loading = false;
+	
+	// Disabled audio never touches OpenAL (used for headless games)
+	private boolean enabled = true;
 	
 	/**
 	 * Constructor (nothing needed here)
@@ -50,6 +57,17 @@ public class GameAudio
 		AudioPaths = new Vector<String>();
 	}
 	
+	/**
+	 * Constructor that allows the audio to be disabled
+	 * 
+	 * @param enabled False to never initialise OpenAL, all playback calls are then ignored
+	 */
+	GameAudio(boolean enabled)
+	{
+		this();
+		this.enabled = enabled;
+	}
+	
 	/**
 	 * Add a new Audio file to the system
 	 * 
@@ -72,23 +90,60 @@ public class GameAudio
 		if (index + 1 > AudioFilesCount)
 			return;
 		
+		// Skip the sound rather than wait for a background load to finish
+		if (!initialised && loading)
+			return;
+		
 		// Make sure we are initialised!
-		Initialise();
+		if (!Initialise())
+			return;
 		
 		al.alSourcePlay(source[index]);
 	}
 	
+	/**
+	 * Initialise the sound system and load all the audio files on one of the game's job threads (see Game.submitJob()), so the
+	 * first call to PlayAudioIndex() does not hold up a game tick. Sounds played before the loading has finished are skipped
+	 * 
+	 * @param game The game whose job threads to use
+	 */
+	public void InitialiseInBackground(Game game)
+	{
+		if (initialised || loading || !enabled)
+			return;
+		
+		loading = true;
+		game.submitJob(new Callable<Boolean>()
+		{
+			public Boolean call()
+			{
+				try
+				{
+					return(Initialise());
+				}
+				finally
+				{
+					loading = false;
+				}
+			}
+		}, null);
+	}
+	
 	/**
 	 * Initialise and setup the sound system
 	 * 
 	 * @return The success of the initialisation process
 	 */
-	public boolean Initialise()
+	public synchronized boolean Initialise()
 	{
 		// Make sure we only initialise once
 		if (initialised)
 			return(true);
 		
+		// Disabled audio never loads anything
+		if (!enabled)
+			return(false);
+		
 		// Make sure there are audio items to load else skip this
 		if (AudioPaths.size() <= 0)
 			return(false);
@@ -189,7 +244,7 @@ public class GameAudio
 	/**
 	 * Kill all the audio datas
 	 */
-	public void KillAllData()
+	public synchronized void KillAllData()
 	{
 		// Only try kill if we initialised
 		if (!initialised)
@@ -0,0 +1,20 @@
+package GameEngine;
+
+/**
+ * A broadphase finds the pairs of GameObjects whose bounding boxes overlap, without comparing every object with every other one.
+ * The engine provides two, SpatialHash and AABBTree.
+ *
+ * @see SpatialHash
+ * @see AABBTree
+ * @see CollisionStage
+ */
+public interface GameBroadphase
+{
+	/**
+	 * Finds every pair of collidable objects whose bounding boxes overlap or touch
+	 *
+	 * @param listener Given each pair, once
+	 * @return The number of pairs found
+	 */
+	public int findPairs(GameCollisionListener listener);
+}
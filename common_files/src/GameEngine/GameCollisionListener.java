@@ -0,0 +1,20 @@
+package GameEngine;
+
+/**
+ * Receives the pairs of GameObjects found to be touching by a broadphase (see SpatialHash and AABBTree).
+ * <p>
+ * The broadphase only compares the objects' axis-aligned bounding boxes, so this is the place for any finer test (e.g. pixel
+ * perfect collision) and for the game's response to the collision.
+ *
+ * @see SpatialHash
+ */
+public interface GameCollisionListener
+{
+	/**
+	 * Called once for each pair of collidable objects whose bounding boxes overlap (or touch)
+	 *
+	 * @param a The object that was added to the broadphase first
+	 * @param b The object that was added to the broadphase second
+	 */
+	public void collision(GameObject a, GameObject b);
+}
@@ -0,0 +1,26 @@
+package GameEngine;
+
+/**
+ * Receives the result of a background job submitted with Game.submitJob() (or Game.loadTextureAsync()).
+ * <p>
+ * The job itself runs on a worker thread but these methods are always called on the logic thread, at the start of a game tick
+ * before the logicStep(), so they may safely change the game's state (e.g. add the loaded texture to a GameObject).
+ *
+ * @see Game
+ */
+public interface GameJobListener<T>
+{
+	/**
+	 * Called when the job has finished
+	 *
+	 * @param result The value returned by the job
+	 */
+	public void jobCompleted(T result);
+	
+	/**
+	 * Called instead of jobCompleted() when the job threw an exception
+	 *
+	 * @param e The exception thrown by the job
+	 */
+	public void jobFailed(Exception e);
+}
@@ -0,0 +1,19 @@
+package GameEngine;
+
+/**
+ * A finer collision test run by a CollisionStage on the pairs found by its broadphase, e.g. a pixel perfect test or a test of the
+ * objects' real shapes. Without one a CollisionStage treats every pair with overlapping bounding boxes as touching.
+ *
+ * @see CollisionStage
+ */
+public interface GameNarrowphase
+{
+	/**
+	 * Tests whether two objects, whose bounding boxes overlap, really touch
+	 *
+	 * @param a The first object
+	 * @param b The second object
+	 * @return True if the objects touch
+	 */
+	public boolean collides(GameObject a, GameObject b);
+}
@@ -33,6 +33,11 @@ import com.jogamp.opengl.util.texture.*;
  * Objects can be marked as collidable (enabled for collision detection) or not for use as
  * background items or such.
  * <p>
+ * An object's position and rotation can be kept in an EntityStore instead of the object itself
+ * (see setEntityStore()). Code extending GameObject should therefore use the accessors
+ * (getPosition(), setPosition(), incrementPosition(), setRotation() etc) rather than the
+ * position and rotation fields, which are not kept up to date while the object is in a store.
+ * <p>
  * 
  * @author Richard Baxter
  * @author Justin Crause
@@ -57,6 +62,9 @@ public class GameObject
 	
 	private Point2D.Float imgDim = new Point2D.Float(0.0f, 0.0f);
 	
+	// The center of the active texture / sprite, kept up to date by setTextureCoords() so it can be read without allocating
+	private float centerX, centerY;
+	
 	// Sprite sheet settings
 	private boolean useSpriteSheet = false;
 	private GameTexture spriteSheet;
@@ -68,6 +76,8 @@ public class GameObject
 	private int spriteSheetRows;
 	private int spriteSheetCurCol;
 	private int spriteSheetCurRow;
+	private TextureCoords [] spriteSheetCoords; // Worked out once per sub image, so animating creates no garbage
+	private AlphaMask [] spriteSheetMasks; // For pixel perfect collision detection, shared with every object using the sheet
 	
 	// Animation controls (Need sprite-sheet!!)
 	private boolean animate = false;
@@ -76,6 +86,37 @@ public class GameObject
 	private int timerMax = 10;
 	
 	protected boolean collidable = true;
+	private int collisionCategory = 1;
+	private int collisionMask = 0xFFFFFFFF;
+	private boolean independentUpdate = false;
+	
+	// Continuous collision, the position at the start of the tick (see setContinuousCollision())
+	private boolean continuousCollision = false;
+	private boolean sweepValid = false;
+	private float sweepX, sweepY;
+	
+	// The store holding this object's transform, if any (see setEntityStore())
+	EntityStore entityStore;
+	int entityIndex = -1;
+	
+	// The AABB tree this object is in, if any (see AABBTree)
+	AABBTree tree;
+	int treeProxy = -1;
+	
+	// The pool this object came from, if any (see GameObjectPool)
+	GameObjectPool<?> pool;
+	boolean inPool = false;
+	
+	// Counts the times this object has left a world or gone back to its pool, so a CollisionStage can tell a reused object from
+	// its old self (see detach())
+	int generation = 0;
+	
+	// Render interpolation (see Game.setInterpolation()). The transform is sampled once per game tick when drawn
+	private long interpTick = -1;
+	private long interpPrevTick = -1;
+	private float prevX, prevY, prevRotation;
+	private float curX, curY, curRotation;
+	private float drawX, drawY, drawRotation;
 	
 	//==============================================================================
 	
@@ -106,7 +147,7 @@ public class GameObject
 	 */
 	public float getDegreesTo(GameObject o)
 	{
-		return(getDegreesTo(o.position));
+		return((float)Math.toDegrees(getRadiansTo(o)));
 	}
 	
 	/**
@@ -117,7 +158,7 @@ public class GameObject
 	 */
 	public float getRadiansTo(GameObject o)
 	{
-		return(getRadiansTo(o.position));
+		return((float)Math.atan2((o.posY() - posY()),(o.posX() - posX())));
 	}
 	
 	/**
@@ -139,7 +180,7 @@ public class GameObject
 	 */
 	public float getRadiansTo(Point2D.Float o)
 	{
-		return((float)Math.atan2((o.y - position.y),(o.x - position.x)));
+		return((float)Math.atan2((o.y - posY()),(o.x - posX())));
 	}
 	
 	//==============================================================================
@@ -151,8 +192,7 @@ public class GameObject
 	 */
 	public void setPosition(Point2D.Float p)
 	{
-		position.x = p.x;
-		position.y = p.y;
+		setPos(p.x, p.y);
 	}
 	
 	/**
@@ -163,8 +203,7 @@ public class GameObject
 	 */
 	public void setPosition(float x, float y)
 	{
-		position.x = x;
-		position.y = y;
+		setPos(x, y);
 	}
 	
 	/**
@@ -174,8 +213,7 @@ public class GameObject
 	 */
 	public void incrementPosition(Point2D.Float p)
 	{
-		position.x += p.x;
-		position.y += p.y;
+		setPos(posX() + p.x, posY() + p.y);
 	}
 	
 	/**
@@ -186,8 +224,7 @@ public class GameObject
 	 */
 	public void incrementPosition(float x, float y)
 	{
-		position.x += x;
-		position.y += y;
+		setPos(posX() + x, posY() + y);
 	}
 	
 	/**
@@ -197,7 +234,73 @@ public class GameObject
 	 */
 	public Point2D.Float getPosition()
 	{
-		return(new Point2D.Float(position.x, position.y));
+		return(new Point2D.Float(posX(), posY()));
+	}
+	
+	/**
+	 * Gets the position of this object without creating a new point
+	 *
+	 * @param out The point to fill with the position
+	 * @return The given point
+	 */
+	public Point2D.Float getPosition(Point2D.Float out)
+	{
+		out.x = posX();
+		out.y = posY();
+		return(out);
+	}
+	
+	/**
+	 * Gets the x position of this object
+	 *
+	 * @return x position of the object
+	 */
+	public float getX()
+	{
+		return(posX());
+	}
+	
+	/**
+	 * Gets the y position of this object
+	 *
+	 * @return y position of the object
+	 */
+	public float getY()
+	{
+		return(posY());
+	}
+	
+	/**
+	 * Returns the x position of this object, read from its EntityStore if it is in one
+	 */
+	private float posX()
+	{
+		return(entityStore == null ? position.x : entityStore.x[entityIndex]);
+	}
+	
+	/**
+	 * Returns the y position of this object, read from its EntityStore if it is in one
+	 */
+	private float posY()
+	{
+		return(entityStore == null ? position.y : entityStore.y[entityIndex]);
+	}
+	
+	/**
+	 * Sets the position of this object, in its EntityStore if it is in one
+	 */
+	private void setPos(float x, float y)
+	{
+		if (entityStore == null)
+		{
+			position.x = x;
+			position.y = y;
+		}
+		else
+		{
+			entityStore.x[entityIndex] = x;
+			entityStore.y[entityIndex] = y;
+		}
 	}
 	
 	//==============================================================================
@@ -209,9 +312,94 @@ public class GameObject
 	 */
 	public void setRotation(float angle)
 	{
-		rotation = angle;
+		if (entityStore == null)
+			rotation = angle;
+		else
+			entityStore.rotation[entityIndex] = angle;
 	}
-
+	
+	/**
+	 * Gets the rotation of the object
+	 * 
+	 * @return The angle of rotation in degrees
+	 */
+	public float getRotation()
+	{
+		return(rot());
+	}
+	
+	/**
+	 * Returns the rotation of this object, read from its EntityStore if it is in one
+	 */
+	private float rot()
+	{
+		return(entityStore == null ? rotation : entityStore.rotation[entityIndex]);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Moves this object's transform into an EntityStore, or back out of it. While in a store the object's position and rotation
+	 * are kept in the store's arrays, where many objects can be moved or checked in one tight loop (see EntityStore)
+	 * 
+	 * @param store The store to move into, or null to take the object out of its store
+	 */
+	public void setEntityStore(EntityStore store)
+	{
+		if (store == entityStore)
+			return;
+		
+		float x = posX(), y = posY(), r = rot();
+		if (entityStore != null)
+		{
+			entityStore.remove(entityIndex);
+			entityStore = null;
+			entityIndex = -1;
+		}
+		
+		position.x = x;
+		position.y = y;
+		rotation = r;
+		
+		if (store != null)
+		{
+			entityIndex = store.add(this, x, y, r);
+			entityStore = store;
+			syncStoreTexture();
+		}
+	}
+	
+	/**
+	 * Returns the EntityStore holding this object's transform
+	 * 
+	 * @return The store, or null if the object is not in one
+	 */
+	public EntityStore getEntityStore()
+	{
+		return(entityStore);
+	}
+	
+	/**
+	 * Returns this object's index in its EntityStore. This can change whenever another object leaves the store
+	 * 
+	 * @return The index, or -1 if the object is not in a store
+	 */
+	public int getEntityIndex()
+	{
+		return(entityIndex);
+	}
+	
+	/**
+	 * Copies the active texture and sprite sheet frame into the EntityStore
+	 */
+	private void syncStoreTexture()
+	{
+		if (entityStore == null)
+			return;
+		entityStore.texture[entityIndex] = useSpriteSheet ? 0 : activeTexture;
+		entityStore.frame[entityIndex] = useSpriteSheet ? spriteSheetCurRow * (spriteSheetCols + 1) + spriteSheetCurCol : 0;
+	}
+	
 	//==============================================================================
 	
 	/**
@@ -243,7 +431,22 @@ public class GameObject
 	 */
 	public Rectangle2D.Float getAABoundingBox()
 	{
-		return(new Rectangle2D.Float(position.x - getCurrentCenter().x, position.y - getCurrentCenter().y, imgDim.x, imgDim.y));
+		return(getAABoundingBox(new Rectangle2D.Float()));
+	}
+	
+	/**
+	 * Gets the Axis-Aligned Bounding Box of this object without creating a new rectangle, for use in collision loops
+	 *
+	 * @param out The rectangle to fill with the bounding box
+	 * @return The given rectangle
+	 */
+	public Rectangle2D.Float getAABoundingBox(Rectangle2D.Float out)
+	{
+		out.x = getBoundsX();
+		out.y = getBoundsY();
+		out.width = imgDim.x;
+		out.height = imgDim.y;
+		return(out);
 	}
 	
 	/**
@@ -253,26 +456,62 @@ public class GameObject
 	 */
 	public Rectangle getIntAABoundingBox()
 	{
-		return(new Rectangle((int)(position.x - getCurrentCenter().x), (int)(position.y - getCurrentCenter().y), (int)imgDim.x, (int)imgDim.y));
+		return(getIntAABoundingBox(new Rectangle()));
 	}
 	
-	//==============================================================================
+	/**
+	 * Gets the Integer Value Axis-Aligned Bounding Box of this object without creating a new rectangle
+	 *
+	 * @param out The rectangle to fill with the bounding box
+	 * @return The given rectangle
+	 */
+	public Rectangle getIntAABoundingBox(Rectangle out)
+	{
+		out.x = (int)getBoundsX();
+		out.y = (int)getBoundsY();
+		out.width = (int)imgDim.x;
+		out.height = (int)imgDim.y;
+		return(out);
+	}
 	
 	/**
-	 * Get the center of the object (based on the texture / sprite sheet)
+	 * Gets the left edge of the Axis-Aligned Bounding Box
 	 *
-	 * @return Center of the object
+	 * @return The smallest x of the bounding box
 	 */
-	private Point2D.Float getCurrentCenter()
+	public float getBoundsX()
 	{
-		if (useSpriteSheet)
-		{
-			return(new Point2D.Float(subImageCX, subImageCY));
-		}
-		else
-		{
-			return(centers.elementAt(activeTexture));
-		}
+		return(posX() - centerX);
+	}
+	
+	/**
+	 * Gets the bottom edge of the Axis-Aligned Bounding Box
+	 *
+	 * @return The smallest y of the bounding box
+	 */
+	public float getBoundsY()
+	{
+		return(posY() - centerY);
+	}
+	
+	/**
+	 * Gets the width of the object (of its active texture / sprite)
+	 *
+	 * @return The width in pixels
+	 */
+	public float getWidth()
+	{
+		return(imgDim.x);
+	}
+	
+	/**
+	 * Gets the height of the object (of its active texture / sprite)
+	 *
+	 * @return The height in pixels
+	 */
+	public float getHeight()
+	{
+		return(imgDim.y);
 	}
 	
 	/**
@@ -310,6 +549,45 @@ public class GameObject
 		return(markedForDestruction);
 	}
 	
+	/**
+	 * Takes this object out of its EntityStore and AABBTree (if it is in them), called when it is removed from a GameWorld. Its
+	 * contacts in any CollisionStage are dropped at the next step
+	 */
+	void detach()
+	{
+		generation++;
+		setEntityStore(null);
+		if (tree != null)
+			tree.remove(this);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Called when this object is taken from a GameObjectPool, override this to reset the object's own state (e.g. velocity or timers)
+	 */
+	protected void onAcquire()
+	{
+	}
+	
+	/**
+	 * Called when this object is given back to a GameObjectPool, override this to let go of anything the object refers to
+	 */
+	protected void onRelease()
+	{
+	}
+	
+	/**
+	 * Resets the state every object needs reset before it is reused from a pool
+	 */
+	void resetForPool()
+	{
+		detach();
+		markedForDestruction = false;
+		interpTick = -1;
+		sweepValid = false;
+	}
+	
 	//==============================================================================
 	
 	/**
@@ -332,6 +610,199 @@ public class GameObject
 		return(collidable);
 	 }
 	
+	/**
+	 * Sets which kinds of objects this object collides with. Each object belongs to one or more categories (bits) and has a mask of
+	 * the categories it collides with. Two objects are only tested against each other when each one's category is in the other's
+	 * mask, which is checked before any bounding boxes are compared (see SpatialHash and AABBTree).
+	 * <p>
+	 * E.g. with WALL = 1 and BULLET = 2, walls use setCollisionFilter(WALL, BULLET) so they never collide with each other.
+	 * By default an object is in category 1 and collides with everything
+	 *
+	 * @param category The category bits of this object
+	 * @param mask The category bits this object collides with
+	 */
+	public void setCollisionFilter(int category, int mask)
+	{
+		collisionCategory = category;
+		collisionMask = mask;
+	}
+	
+	/**
+	 * Returns the collision category bits of this object
+	 *
+	 * @return The category bits
+	 */
+	public int getCollisionCategory()
+	{
+		return(collisionCategory);
+	}
+	
+	/**
+	 * Returns the collision mask of this object, the categories it collides with
+	 *
+	 * @return The mask bits
+	 */
+	public int getCollisionMask()
+	{
+		return(collisionMask);
+	}
+	
+	/**
+	 * Returns whether the collision filters of this object and another let them collide (see setCollisionFilter()).
+	 * This does not look at their positions
+	 *
+	 * @param o The other object
+	 * @return True if the two objects may collide
+	 */
+	public boolean canCollideWith(GameObject o)
+	{
+		return((collisionCategory & o.collisionMask) != 0 && (o.collisionCategory & collisionMask) != 0);
+	}
+	
+	/**
+	 * Called by a CollisionStage in the tick this object starts touching another object. Does nothing by default
+	 *
+	 * @param other The object now touching this one
+	 */
+	protected void onCollisionBegin(GameObject other)
+	{
+	}
+	
+	/**
+	 * Called by a CollisionStage in every later tick this object is still touching another object. Does nothing by default
+	 *
+	 * @param other The object still touching this one
+	 */
+	protected void onCollisionStay(GameObject other)
+	{
+	}
+	
+	/**
+	 * Called by a CollisionStage in the tick this object stops touching another object, including when either object was removed
+	 * from the broadphase. Does nothing by default
+	 *
+	 * @param other The object no longer touching this one
+	 */
+	protected void onCollisionEnd(GameObject other)
+	{
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Marks this object's doTimeStep() as independent of every other object, meaning it only reads and changes this object's own state
+	 * (no other objects, no shared game state and no Game.getRandom()). Independent objects may then be updated in parallel by
+	 * Game.doTimeSteps()
+	 *
+	 * @param enabled True if this object can be updated independently
+	 */
+	public void setIndependentUpdate(boolean enabled)
+	{
+		independentUpdate = enabled;
+	}
+	
+	/**
+	 * Returns whether this object's doTimeStep() is independent of every other object
+	 *
+	 * @return True if this object can be updated in parallel with others
+	 */
+	public boolean isIndependentUpdate()
+	{
+		return(independentUpdate);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Marks this object as fast moving, so that it can not pass through thin objects between two game ticks (e.g. a bullet and a
+	 * wall). The broadphases then use the box the object swept through during the tick, from where it was when Game.doTimeSteps()
+	 * started to where it is now, and a CollisionStage tests the swept box (see SweptCollision) instead of running its narrowphase.
+	 * <p>
+	 * Only the motion made during Game.doTimeSteps() is swept, moving the object before or after that is a jump.
+	 *
+	 * @param enabled True to sweep this object's motion
+	 */
+	public void setContinuousCollision(boolean enabled)
+	{
+		continuousCollision = enabled;
+		sweepValid = false;
+	}
+	
+	/**
+	 * Returns whether this object's motion is swept for collision detection
+	 *
+	 * @return True if continuous collision is enabled
+	 */
+	public boolean getContinuousCollision()
+	{
+		return(continuousCollision);
+	}
+	
+	/**
+	 * Returns where this object was at the start of the tick (see setContinuousCollision())
+	 *
+	 * @return The x position the motion of this tick started from, the current x position if it is not swept
+	 */
+	public float getSweepStartX()
+	{
+		return(sweepValid ? sweepX : posX());
+	}
+	
+	/**
+	 * Returns where this object was at the start of the tick (see setContinuousCollision())
+	 *
+	 * @return The y position the motion of this tick started from, the current y position if it is not swept
+	 */
+	public float getSweepStartY()
+	{
+		return(sweepValid ? sweepY : posY());
+	}
+	
+	/**
+	 * Remembers where a fast object starts this tick's motion. Called by Game.doTimeSteps()
+	 */
+	void beginSweep()
+	{
+		if (!continuousCollision)
+			return;
+		sweepX = posX();
+		sweepY = posY();
+		sweepValid = true;
+	}
+	
+	/**
+	 * Returns whether this object moved during the tick and is swept
+	 */
+	boolean isSwept()
+	{
+		return(sweepValid && (sweepX != posX() || sweepY != posY()));
+	}
+	
+	// The bounding box covering the whole of this tick's motion, the bounding box if the object is not swept
+	float getSweptMinX()
+	{
+		float x = getBoundsX();
+		return(sweepValid ? Math.min(x, sweepX - centerX) : x);
+	}
+	
+	float getSweptMinY()
+	{
+		float y = getBoundsY();
+		return(sweepValid ? Math.min(y, sweepY - centerY) : y);
+	}
+	
+	float getSweptMaxX()
+	{
+		float x = getBoundsX();
+		return((sweepValid ? Math.max(x, sweepX - centerX) : x) + imgDim.x);
+	}
+	
+	float getSweptMaxY()
+	{
+		float y = getBoundsY();
+		return((sweepValid ? Math.max(y, sweepY - centerY) : y) + imgDim.y);
+	}
+	
 	//==============================================================================
 	
 	/**
@@ -443,6 +914,8 @@ public class GameObject
 		// Calculate the rows and cols (-1 beccause
 		spriteSheetCols = (spriteSheet.w / subImageW) - 1;
 		spriteSheetRows = (spriteSheet.h / subImageH) - 1;
+		spriteSheetCoords = new TextureCoords [Math.max(1, (spriteSheetCols + 1) * (spriteSheetRows + 1))];
+		spriteSheetMasks = t.getFrameMasks(subW, subH);
 		
 		// Setup tex coords
 		setTextureCoords();
@@ -492,20 +965,54 @@ public class GameObject
 	{
 		if (useSpriteSheet)
 		{
-			int x = spriteSheetCurCol * subImageW;
-			int y = spriteSheet.h - ((spriteSheetCurRow + 1) * subImageH);
-			tc = spriteSheet.t.getSubImageTexCoords(x, y, x + subImageW, y + subImageH);
+			int frame = spriteSheetCurRow * (spriteSheetCols + 1) + spriteSheetCurCol;
+			if (spriteSheetCoords[frame] == null)
+			{
+				int x = spriteSheetCurCol * subImageW;
+				int y = spriteSheet.h - ((spriteSheetCurRow + 1) * subImageH);
+				spriteSheetCoords[frame] = spriteSheet.getSubImageTexCoords(x, y, x + subImageW, y + subImageH);
+			}
+			tc = spriteSheetCoords[frame];
 			
 			imgDim.x = subImageW;
 			imgDim.y = subImageH;
+			centerX = subImageCX;
+			centerY = subImageCY;
 		}
 		else
 		{
-			tc = getCurrentTexture().t.getImageTexCoords();
+			tc = getCurrentTexture().getImageTexCoords();
 			
 			imgDim.x = getCurrentTexture().w;
 			imgDim.y = getCurrentTexture().h;
+			centerX = centers.elementAt(activeTexture).x;
+			centerY = centers.elementAt(activeTexture).y;
 		}
+		
+		syncStoreTexture();
+	}
+	
+	/**
+	 * Gets the alpha mask of the active texture, or of the current frame of the sprite sheet, for pixel perfect collision detection
+	 *
+	 * @return The mask, a pixel is solid if its alpha is not 0
+	 * @see PixelCollision
+	 */
+	public AlphaMask getAlphaMask()
+	{
+		if (useSpriteSheet)
+			return(spriteSheetMasks[Math.min(spriteSheetCurRow * (spriteSheetCols + 1) + spriteSheetCurCol, spriteSheetMasks.length - 1)]);
+		return(getCurrentTexture().getAlphaMask());
+	}
+	
+	/**
+	 * Returns a number that changes whenever the image this object shows changes, that is its texture, sprite sheet frame or
+	 * reflection. A CollisionStage only reuses a narrowphase result while this stays the same
+	 */
+	int getImageKey()
+	{
+		int image = useSpriteSheet ? spriteSheetCurRow * (spriteSheetCols + 1) + spriteSheetCurCol : activeTexture;
+		return((image << 3) | (useSpriteSheet ? 4 : 0) | (reflectY ? 2 : 0) | (reflectX ? 1 : 0));
 	}
 	
 	//==============================================================================
@@ -526,42 +1033,239 @@ public class GameObject
 		}
 	}
 	
+	/**
+	 * Adds this object to a sprite batch, in the batch's current colour
+	 */
+	void draw(SpriteBatch batch, float offsetx, float offsety, float depth)
+	{
+		if (activeTexture != -1 | useSpriteSheet)
+		{
+			batch.add(getCurrentTexture(), offsetx + drawX, offsety + drawY, drawRotation, centerX, centerY, imgDim.x, imgDim.y,
+					reflectX ? tc.right() : tc.left(), reflectX ? tc.left() : tc.right(),
+					reflectY ? tc.bottom() : tc.top(), reflectY ? tc.top() : tc.bottom(), depth);
+		}
+	}
+	
 	private void internalDraw (GL gl, float offsetx, float offsety, float depth)
+	{
+		 float tc_lft = reflectX ? tc.right() : tc.left();
+		 float tc_rgt = reflectX ? tc.left() : tc.right();
+		 float tc_top = reflectY ? tc.bottom() : tc.top();
+		 float tc_bot = reflectY ? tc.top() : tc.bottom();
+		
+		 drawQuad(gl, getCurrentTexture(), offsetx + drawX, offsety + drawY, drawRotation, centerX, centerY,
+				 imgDim.x, imgDim.y, tc_lft, tc_rgt, tc_top, tc_bot, depth);
+	}
+	
+	/**
+	 * Records this object into a render snapshot instead of drawing it (used when rendering on a separate thread).
+	 * Both the previous and current transform are recorded so the render thread can interpolate between them
+	 *
+	 * @return False if the object was not recorded as it lies outside the viewport
+	 */
+	boolean record(RenderSnapshot s, float offsetx, float offsety, float depth, boolean interpolate, long tick, boolean cull, float viewW, float viewH)
+	{
+		if (activeTexture == -1 & !useSpriteSheet)
+			return(true);
+		
+		float tc_lft = reflectX ? tc.right() : tc.left();
+		float tc_rgt = reflectX ? tc.left() : tc.right();
+		float tc_top = reflectY ? tc.bottom() : tc.top();
+		float tc_bot = reflectY ? tc.top() : tc.bottom();
+		
+		// A span of 0 means the sprite is always drawn at its current transform
+		float cx = posX(), cy = posY(), cr = rot();
+		float px = cx, py = cy, pr = cr;
+		long span = 0;
+		if (interpolate)
+		{
+			sampleTransform(tick);
+			px = prevX;
+			py = prevY;
+			pr = prevRotation;
+			span = tick - interpPrevTick;
+		}
+		
+		// The render thread may draw the object anywhere between the two transforms
+		if (cull && !inView(offsetx + px, offsety + py, offsetx + cx, offsety + cy, pr != 0.0f || cr != 0.0f, viewW, viewH))
+			return(false);
+		
+		s.addSprite(getCurrentTexture(), offsetx + cx, offsety + cy, cr, offsetx + px, offsety + py, pr, span,
+				centerX, centerY, imgDim.x, imgDim.y, tc_lft, tc_rgt, tc_top, tc_bot, depth);
+		return(true);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Tests whether this object, at its current position, touches the viewport
+	 *
+	 * @param offsetx The world offset
+	 * @param offsety The world offset
+	 * @param viewW The width of the viewport
+	 * @param viewH The height of the viewport
+	 */
+	boolean inView(float offsetx, float offsety, float viewW, float viewH)
+	{
+		float x = offsetx + posX(), y = offsety + posY();
+		return(inView(x, y, x, y, rot() != 0.0f, viewW, viewH));
+	}
+	
+	/**
+	 * Tests whether this object, where it is about to be drawn (see prepareDraw()), touches the viewport
+	 */
+	boolean drawnInView(float offsetx, float offsety, float viewW, float viewH)
+	{
+		float x = offsetx + drawX, y = offsety + drawY;
+		return(inView(x, y, x, y, drawRotation != 0.0f, viewW, viewH));
+	}
+	
+	/**
+	 * Tests whether this object touches the viewport (from 0,0 to viewW,viewH) anywhere on a straight line between two positions.
+	 * A rotated object is tested with the square around the circle that holds it at any rotation
+	 */
+	boolean inView(float x0, float y0, float x1, float y1, boolean rotated, float viewW, float viewH)
+	{
+		float lft, rgt, bot, top;
+		if (rotated)
+		{
+			float dx = Math.max(centerX, imgDim.x - centerX), dy = Math.max(centerY, imgDim.y - centerY);
+			rgt = top = (float)Math.sqrt(dx * dx + dy * dy);
+			lft = bot = -rgt;
+		}
+		else
+		{
+			lft = -centerX;
+			rgt = imgDim.x - centerX;
+			bot = -centerY;
+			top = imgDim.y - centerY;
+		}
+		return(Math.min(x0, x1) + lft < viewW && Math.max(x0, x1) + rgt > 0
+				&& Math.min(y0, y1) + bot < viewH && Math.max(y0, y1) + top > 0);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Works out where this object should be drawn. Without interpolation this is just its position and rotation, with interpolation
+	 * it is somewhere between the previous game tick's transform and the current one
+	 *
+	 * @param interpolate Whether render interpolation is enabled
+	 * @param tick The number of game ticks that have run
+	 * @param alpha How far (between 0.0 and 1.0) the render is between this game tick and the next
+	 */
+	void prepareDraw(boolean interpolate, long tick, float alpha)
+	{
+		if (!interpolate)
+		{
+			drawX = posX();
+			drawY = posY();
+			drawRotation = rot();
+			return;
+		}
+		
+		sampleTransform(tick);
+		
+		// If some ticks were not drawn, spread the interpolation over all of them
+		float f = interpolationFraction(tick - interpPrevTick, alpha);
+		drawX = prevX + (curX - prevX) * f;
+		drawY = prevY + (curY - prevY) * f;
+		drawRotation = lerpAngle(prevRotation, curRotation, f);
+	}
+	
+	/**
+	 * Samples the current transform the first time this object is drawn in a game tick, keeping the previous one
+	 */
+	private void sampleTransform(long tick)
+	{
+		if (interpTick == tick)
+			return;
+		
+		if (interpTick == -1)
+		{
+			// First time being drawn (or snapped), nothing to interpolate from
+			prevX = posX();
+			prevY = posY();
+			prevRotation = rot();
+			interpPrevTick = tick - 1;
+		}
+		else
+		{
+			prevX = curX;
+			prevY = curY;
+			prevRotation = curRotation;
+			interpPrevTick = interpTick;
+		}
+		curX = posX();
+		curY = posY();
+		curRotation = rot();
+		interpTick = tick;
+	}
+	
+	/**
+	 * Returns how far between the previous and current transform to draw
+	 *
+	 * @param span The number of game ticks between the previous and current transform
+	 * @param alpha How far (between 0.0 and 1.0) the render is between this game tick and the next
+	 */
+	static float interpolationFraction(long span, float alpha)
+	{
+		if (span <= 0)
+			return(1.0f);
+		return((span - 1 + alpha) / span);
+	}
+	
+	/**
+	 * Interpolates between two angles (in degrees) the short way round
+	 */
+	static float lerpAngle(float from, float to, float f)
+	{
+		float diff = (to - from) % 360.0f;
+		if (diff > 180.0f)
+			diff -= 360.0f;
+		else if (diff < -180.0f)
+			diff += 360.0f;
+		return(from + diff * f);
+	}
+	
+	/**
+	 * Stops this object from being interpolated from where it was drawn last. Call this after teleporting an object (e.g. wrapping
+	 * around the edge of the map or respawning) so it does not visibly slide to its new position when render interpolation is enabled
+	 */
+	public void snapInterpolation()
+	{
+		interpTick = -1;
+	}
+	
+	/**
+	 * Draws a textured quad rotated around its center
+	 */
+	static void drawQuad(GL gl, GameTexture t, float x, float y, float rotation, float cx, float cy, float w, float h,
+			float tc_lft, float tc_rgt, float tc_top, float tc_bot, float depth)
 	{
 		 gl.getGL2().glPushMatrix();
-		 
-		 gl.getGL2().glTranslatef(offsetx, offsety, 0);
-		 gl.getGL2().glTranslatef(position.x, position.y, 0);
+		
+		 gl.getGL2().glTranslatef(x, y, 0);
 		 gl.getGL2().glRotatef(rotation, 0.0f, 0.0f, 1.0f);
-		 gl.getGL2().glTranslatef(-getCurrentCenter().x, -getCurrentCenter().y, 0);
-		 getCurrentTexture().t.enable(gl);
-		 getCurrentTexture().t.bind(gl);
-		 
-		 float tc_lft = tc.left();
-		 float tc_rgt = tc.right();
-		 float tc_top = tc.top();
-		 float tc_bot = tc.bottom();
-		 if (reflectX)
-		 {
-			 tc_lft = tc.right();
-			 tc_rgt = tc.left();
-		 }
-		 if (reflectY)
+		 gl.getGL2().glTranslatef(-cx, -cy, 0);
+		 // Headless textures have no GL texture
+		 if (t.t != null)
 		 {
-			 tc_top = tc.bottom();
-			 tc_bot = tc.top();
+			 t.t.enable(gl);
+			 t.t.bind(gl);
 		 }
-		 
+		
 		 gl.getGL2().glBegin(GL2.GL_QUADS);
 		 {
-			 gl.getGL2().glTexCoord2f(tc_lft, tc_bot); gl.getGL2().glVertex3f(0,		0,			depth);
-			 gl.getGL2().glTexCoord2f(tc_rgt, tc_bot); gl.getGL2().glVertex3f(imgDim.x,	0,			depth);
-			 gl.getGL2().glTexCoord2f(tc_rgt, tc_top); gl.getGL2().glVertex3f(imgDim.x,	imgDim.y,	depth);
-			 gl.getGL2().glTexCoord2f(tc_lft, tc_top); gl.getGL2().glVertex3f(0,		imgDim.y,	depth);
+			 gl.getGL2().glTexCoord2f(tc_lft, tc_bot); gl.getGL2().glVertex3f(0,	0,	depth);
+			 gl.getGL2().glTexCoord2f(tc_rgt, tc_bot); gl.getGL2().glVertex3f(w,	0,	depth);
+			 gl.getGL2().glTexCoord2f(tc_rgt, tc_top); gl.getGL2().glVertex3f(w,	h,	depth);
+			 gl.getGL2().glTexCoord2f(tc_lft, tc_top); gl.getGL2().glVertex3f(0,	h,	depth);
 		 }
 		 gl.getGL2().glEnd();
-		 getCurrentTexture().t.disable(gl);
-		 
+		 if (t.t != null)
+			 t.t.disable(gl);
+		
 		 gl.getGL2().glPopMatrix();
 	}
 	
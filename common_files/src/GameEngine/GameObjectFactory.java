@@ -0,0 +1,16 @@
+package GameEngine;
+
+/**
+ * Creates new GameObjects for a GameObjectPool when the pool has no free objects left.
+ *
+ * @see GameObjectPool
+ */
+public interface GameObjectFactory<T extends GameObject>
+{
+	/**
+	 * Creates a new object (its textures should be added here, they are kept while the object is in the pool)
+	 *
+	 * @return The new object
+	 */
+	public T create();
+}
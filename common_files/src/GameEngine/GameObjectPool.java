@@ -0,0 +1,216 @@
+package GameEngine;
+
+/**
+ * Keeps short lived GameObjects (bullets, explosions, asteroid fragments etc) for reuse, so firing a bullet does not create a new
+ * object (with its textures, centers and points) every time and leave the old one for the garbage collector.
+ * <p>
+ * Take an object with acquire() instead of creating it and give it back with release() once it is no longer used. Objects in a
+ * GameWorld are given back automatically when they are removed by GameWorld.removeDestroyed(). When the pool is empty acquire()
+ * creates a new object with the pool's GameObjectFactory.
+ * <p>
+ * A reused object still holds whatever state it had when it was released, apart from what GameObject resets itself (the destruction
+ * mark, render interpolation, EntityStore and AABBTree). Override GameObject.onAcquire() (or onRelease()) to reset the rest, e.g. the
+ * velocity or a timer, and set the position after acquiring the object.
+ * <p>
+ * A pool is not thread safe, use it from the logic thread only (not from a doTimeStep() that is updated in parallel).
+ * <p>
+ * E.g:<p>
+ * <code> bullets = new GameObjectPool&lt;BulletObject&gt;(new GameObjectFactory&lt;BulletObject&gt;()</code><p>
+ * <code> {</code><p>
+ * <code> &nbsp;&nbsp;&nbsp;&nbsp;public BulletObject create() { return new BulletObject(bulletTexture); }</code><p>
+ * <code> }, 256);</code><p>
+ * <code> ...</code><p>
+ * <code> BulletObject bullet = bullets.acquire();</code><p>
+ * <code> bullet.setPosition(x, y);</code><p>
+ * <code> objects.add(bullet);</code><p>
+ *
+ * @see GameObjectFactory
+ * @see GameWorld
+ */
+public class GameObjectPool<T extends GameObject>
+{
+	private GameObjectFactory<T> factory;
+	private GameObject [] free;
+	private int freeCount = 0;
+	private int maxFree;
+	
+	// Statistics
+	private long hits = 0;
+	private long misses = 0;
+	private long releases = 0;
+	private long discards = 0;
+	
+	//==============================================================================
+	
+	/**
+	 * Constructor
+	 *
+	 * @param factory Creates the objects when the pool is empty
+	 * @param maxFree The most free objects to keep, objects released while the pool is full are left for the garbage collector
+	 */
+	public GameObjectPool(GameObjectFactory<T> factory, int maxFree)
+	{
+		if (maxFree < 1)
+			throw new IllegalArgumentException("A pool must be able to keep at least one object");
+		
+		this.factory = factory;
+		this.maxFree = maxFree;
+		free = new GameObject [Math.min(maxFree, 64)];
+	}
+	
+	/**
+	 * Creates objects up front (e.g. while the game loads) so the first acquire() calls do not have to
+	 *
+	 * @param count The number of objects to create, the pool is never filled past its maximum
+	 */
+	public void prefill(int count)
+	{
+		for (int i = 0 ; i < count && freeCount < maxFree ; i++)
+		{
+			T o = factory.create();
+			o.pool = this;
+			push(o);
+		}
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Takes an object from the pool, creating one if the pool is empty. GameObject.onAcquire() is called on the object
+	 *
+	 * @return The object
+	 */
+	@SuppressWarnings("unchecked")
+	public T acquire()
+	{
+		T o;
+		if (freeCount > 0)
+		{
+			o = (T)free[--freeCount];
+			free[freeCount] = null;
+			hits++;
+		}
+		else
+		{
+			o = factory.create();
+			o.pool = this;
+			misses++;
+		}
+		
+		o.inPool = false;
+		o.onAcquire();
+		return(o);
+	}
+	
+	/**
+	 * Gives an object back to the pool. GameObject.onRelease() is called on the object. Do not use the object after this
+	 *
+	 * @param o The object, which must have come from this pool
+	 */
+	public void release(T o)
+	{
+		releaseObject(o);
+	}
+	
+	/**
+	 * Gives an object back to the pool, called by release() and GameWorld.removeDestroyed()
+	 */
+	void releaseObject(GameObject o)
+	{
+		if (o.pool != this)
+			throw new IllegalArgumentException("The object did not come from this pool");
+		if (o.inPool)
+			throw new IllegalStateException("The object has already been released");
+		
+		o.resetForPool();
+		o.onRelease();
+		o.inPool = true;
+		releases++;
+		
+		if (freeCount < maxFree)
+			push(o);
+		else
+			discards++;
+	}
+	
+	private void push(GameObject o)
+	{
+		if (freeCount == free.length)
+		{
+			GameObject [] b = new GameObject [Math.min(maxFree, free.length * 2)];
+			System.arraycopy(free, 0, b, 0, freeCount);
+			free = b;
+		}
+		o.inPool = true;
+		free[freeCount++] = o;
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns the number of objects waiting in the pool
+	 *
+	 * @return The number of free objects
+	 */
+	public int getFreeCount()
+	{
+		return(freeCount);
+	}
+	
+	/**
+	 * Returns the number of times acquire() reused an object from the pool
+	 *
+	 * @return The number of hits
+	 */
+	public long getHits()
+	{
+		return(hits);
+	}
+	
+	/**
+	 * Returns the number of times acquire() had to create a new object because the pool was empty
+	 *
+	 * @return The number of misses
+	 */
+	public long getMisses()
+	{
+		return(misses);
+	}
+	
+	/**
+	 * Returns the number of objects given back to the pool
+	 *
+	 * @return The number of releases
+	 */
+	public long getReleases()
+	{
+		return(releases);
+	}
+	
+	/**
+	 * Returns the number of released objects that were not kept because the pool was full. If this keeps growing, raise the
+	 * pool's maximum
+	 *
+	 * @return The number of discarded objects
+	 */
+	public long getDiscards()
+	{
+		return(discards);
+	}
+	
+	/**
+	 * Resets the statistics
+	 */
+	public void resetStats()
+	{
+		hits = 0;
+		misses = 0;
+		releases = 0;
+		discards = 0;
+	}
+	
+	public String toString()
+	{
+		return("free: " + freeCount + "/" + maxFree + ", hits: " + hits + ", misses: " + misses + ", releases: " + releases + ", discards: " + discards);
+	}
+}
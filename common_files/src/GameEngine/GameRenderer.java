@@ -5,6 +5,7 @@ import javax.media.opengl.glu.*;
 import com.jogamp.opengl.util.awt.*;
 import java.util.*;
 import java.awt.*;
+import java.awt.font.*;
 import java.awt.geom.*;
 
 /**
@@ -12,6 +13,7 @@ import java.awt.geom.*;
  * <p>
  * Font classes are defined in here, a class to store the information about a font
  * as well as a stack object that is used to hold a collection of FontInfo items.
+ * The FontInfo items are reused from frame to frame so drawing text creates no garbage.
  * <p>
  * A renderer for text is provided which creates the text items to be rendered and
  * later renders them.
@@ -43,7 +45,7 @@ class GameRenderer implements GLEventListener
 		//==============================================================================
 		
 		/**
-		 * Constructor for the font info class
+		 * Sets the font info
 		 *
 		 * @param text Text The text to be displayed
 		 * @param x The x-coordinate of the bottom left point to which to draw the text
@@ -55,7 +57,7 @@ class GameRenderer implements GLEventListener
 		 * @param depth The depth at which to draw the shape(s), a lower number means it will be behind other objects
 		 * @param scale What percentage scaling this text should be rendered at (1.0 means the same size, 2.0 means double size etc)
 		 */
-		FontInfo (String text, float x, float y, float r, float g, float b, float a, float depth, float scale)
+		void set(String text, float x, float y, float r, float g, float b, float a, float depth, float scale)
 		{
 			this.text = text;
 			this.x = x;
@@ -73,11 +75,12 @@ class GameRenderer implements GLEventListener
 	//==============================================================================
 	
 	/**
-	 * Class for storing a stack of FontInfo items
+	 * Class for storing a stack of FontInfo items. Popped items stay in the array to be reused
 	 */
 	class FontStack
 	{
-		Stack<FontInfo> stack;
+		FontInfo [] stack = new FontInfo [16];
+		int size = 0;
 		GameFont gFont;
 		TextRenderer tr;
 		
@@ -90,8 +93,9 @@ class GameRenderer implements GLEventListener
 		 */
 		FontStack (GameFont gf)
 		{
-			stack = new Stack<FontInfo>();
-			tr = new TextRenderer(gf.font);
+			// A headless game has no GL context so it only gets the font metrics
+			if (!game.isHeadless())
+				tr = new TextRenderer(gf.font);
 			gFont = gf;
 		}
 	}
@@ -136,7 +140,16 @@ class GameRenderer implements GLEventListener
 		 */
 		void registerFontRender(GameFont gf, String text, float x, float y, float r, float g, float b, float a, float depth, float scale)
 		{
-			textRenderers.elementAt(gf.index).stack.add(new FontInfo(text, x, y, r, g, b, a, depth, scale));
+			FontStack fs = textRenderers.elementAt(gf.index);
+			if (fs.size == fs.stack.length)
+			{
+				FontInfo [] b2 = new FontInfo [fs.size * 2];
+				System.arraycopy(fs.stack, 0, b2, 0, fs.size);
+				fs.stack = b2;
+			}
+			if (fs.stack[fs.size] == null)
+				fs.stack[fs.size] = new FontInfo();
+			fs.stack[fs.size++].set(text, x, y, r, g, b, a, depth, scale);
 		}
 		
 		/**
@@ -147,7 +160,13 @@ class GameRenderer implements GLEventListener
 		 */
 		Rectangle2D.Float getBounds(String s, GameFont gf)
 		{
-			return (Rectangle2D.Float)textRenderers.elementAt(gf.index).tr.getBounds(s);
+			FontStack fs = textRenderers.elementAt(gf.index);
+			if (fs.tr == null)
+			{
+				Rectangle2D r = gf.font.getStringBounds(s, new FontRenderContext(null, true, true));
+				return(new Rectangle2D.Float((float)r.getX(), (float)r.getY(), (float)r.getWidth(), (float)r.getHeight()));
+			}
+			return (Rectangle2D.Float)fs.tr.getBounds(s);
 		}
 			
 		/* need to fix this up, i made the whole stack system so i would reduce the number of calls to 
@@ -157,16 +176,26 @@ class GameRenderer implements GLEventListener
 		*/
 		void processFontDraws (GL gl)
 		{
-			for (FontStack fs : textRenderers)
+			for (int i = 0 ; i < textRenderers.size() ; i++)
 			{
-				while(!fs.stack.isEmpty())
+				FontStack fs = textRenderers.elementAt(i);
+				while(fs.size > 0)
 				{
-					FontInfo fi = fs.stack.pop();
+					FontInfo fi = fs.stack[--fs.size];
+					
+					// A headless game has no TextRenderer, the text is only dropped (after its colour is set, so it is counted)
+					if (fs.tr == null)
+					{
+						gl.getGL2().glColor4f(fi.r, fi.g, fi.b, fi.a);
+						fi.text = null;
+						continue;
+					}
 
 					fs.tr.begin3DRendering();
 					gl.getGL2().glColor4f(fi.r, fi.g, fi.b, fi.a);
 					fs.tr.draw3D(fi.text, fi.x, fi.y, fi.depth, fi.scale);
 					fs.tr.end3DRendering();
+					fi.text = null;
 				}
 			}
 		}
@@ -0,0 +1,298 @@
+package GameEngine;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs several games (in windows or headless) on a shared set of timer threads, instead of each game running its own timer thread.
+ * This is how many game rooms can be hosted in one process without a spinning thread for every one of them.
+ * <p>
+ * Each game is handed to one of the scheduler's threads when it starts. A thread sleeps until the next game tick or frame of any of
+ * its games is due, so use Game.SCHEDULER_PARK for hosted games (a game left on Game.SCHEDULER_SPIN keeps its thread busy).
+ * <p>
+ * The games can be ticked in one of two modes:
+ * <p>
+ * - INDEPENDENT, each game keeps its own GFPS and timing, just as if it had its own timer thread.
+ * <p>
+ * - LOCKSTEP, all the games must have the same GFPS and the games on a thread are ticked together, one game tick of every game
+ * before the next game tick of any of them, so they never drift apart. A game joining later starts on the next shared game tick.
+ * The adaptive tick rate is ignored in this mode and the catch up time budget of the first game on the thread is used for all of them.
+ * Use a single thread if all the games must be ticked together.
+ * <p>
+ * Add the games to the scheduler before they are started (before creating their GameCanvas or calling HeadlessRunner.start()).
+ * The scheduler's threads stop when every game it has been given has ended, or when shutdown() is called.
+ * <p>
+ * E.g:<p>
+ * <code> GameScheduler scheduler = new GameScheduler(1, GameScheduler.LOCKSTEP);</code><p>
+ * <code> scheduler.addGame(roomOne);</code><p>
+ * <code> scheduler.addGame(roomTwo);</code><p>
+ * <code> new HeadlessRunner(roomOne).start();</code><p>
+ * <code> new HeadlessRunner(roomTwo).start();</code><p>
+ *
+ * @see Game
+ */
+public class GameScheduler
+{
+	/**
+	 * Each game keeps its own GFPS and timing
+	 */
+	public static final int INDEPENDENT = 0;
+	/**
+	 * The games on a thread are ticked together at a shared GFPS
+	 */
+	public static final int LOCKSTEP = 1;
+	
+	private int mode;
+	private Worker [] workers;
+	private int nextWorker = 0;
+	private int gfps = 0;
+	private volatile boolean running = true;
+	private AtomicInteger liveGames = new AtomicInteger(0);
+	private int startedGames = 0;
+	private ArrayList<Game> games = new ArrayList<Game>();
+	
+	//==============================================================================
+	
+	/**
+	 * Constructor
+	 *
+	 * @param threads The number of timer threads to share between the games
+	 * @param mode Either INDEPENDENT or LOCKSTEP
+	 */
+	public GameScheduler(int threads, int mode)
+	{
+		if (mode != INDEPENDENT && mode != LOCKSTEP)
+			throw new IllegalArgumentException("Unknown scheduler mode " + mode);
+		if (threads < 1)
+			throw new IllegalArgumentException("A scheduler needs at least one thread");
+		
+		this.mode = mode;
+		workers = new Worker [threads];
+		for (int i = 0 ; i < threads ; i++)
+			workers[i] = new Worker(i);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Hands a game to this scheduler. When the game starts it is ticked (and rendered) by one of the scheduler's threads
+	 *
+	 * @param g The game, which must not have been started yet
+	 */
+	public synchronized void addGame(Game g)
+	{
+		if (!running)
+			throw new IllegalStateException("The scheduler has been shut down");
+		if (g.scheduler != null)
+			throw new IllegalStateException("The game has already been added to a scheduler");
+		if (g.timerStarted())
+			throw new IllegalStateException("The game must be added to the scheduler before it is started");
+		if (mode == LOCKSTEP)
+		{
+			if (gfps == 0)
+				gfps = g.game_frames_per_second;
+			else if (g.game_frames_per_second != gfps)
+				throw new IllegalArgumentException("Games ticked in lockstep must have the same GFPS (" + gfps + ")");
+		}
+		
+		g.scheduler = this;
+		games.add(g);
+	}
+	
+	/**
+	 * Gives a game's timer to one of the threads, called by the game when it starts
+	 */
+	synchronized void attach(GameTimer timer)
+	{
+		if (!running)
+			throw new IllegalStateException("The scheduler has been shut down");
+		
+		timer.scheduler = this;
+		liveGames.incrementAndGet();
+		startedGames++;
+		
+		Worker w = workers[nextWorker];
+		nextWorker = (nextWorker + 1) % workers.length;
+		w.added.add(timer);
+		if (!w.isAlive())
+			w.start();
+		LockSupport.unpark(w);
+	}
+	
+	/**
+	 * Ends every game on this scheduler and stops its threads
+	 */
+	public void shutdown()
+	{
+		ArrayList<Game> all;
+		synchronized (this)
+		{
+			all = new ArrayList<Game>(games);
+		}
+		for (int i = 0 ; i < all.size() ; i++)
+			if (all.get(i).timerRunning())
+				all.get(i).endGame();
+		stop();
+	}
+	
+	/**
+	 * Stops the threads (without ending any games)
+	 */
+	private synchronized void stop()
+	{
+		running = false;
+		for (int i = 0 ; i < workers.length ; i++)
+			LockSupport.unpark(workers[i]);
+	}
+	
+	/**
+	 * Stops the threads if every game that was added has started and since ended
+	 */
+	private synchronized void stopIfAllEnded()
+	{
+		if (liveGames.get() == 0 && startedGames == games.size())
+			stop();
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns the number of games that have been added to this scheduler
+	 *
+	 * @return The number of games
+	 */
+	public synchronized int getGameCount()
+	{
+		return(games.size());
+	}
+	
+	/**
+	 * Returns the number of games that have started and not yet ended
+	 *
+	 * @return The number of running games
+	 */
+	public int getRunningGameCount()
+	{
+		return(liveGames.get());
+	}
+	
+	/**
+	 * Returns the tick mode
+	 *
+	 * @return Either INDEPENDENT or LOCKSTEP
+	 */
+	public int getMode()
+	{
+		return(mode);
+	}
+	
+	//==============================================================================
+	//==============================================================================
+	
+	/**
+	 * One of the scheduler's threads, pumping the timers of the games it has been given
+	 */
+	private class Worker extends Thread
+	{
+		ConcurrentLinkedQueue<GameTimer> added = new ConcurrentLinkedQueue<GameTimer>();
+		private ArrayList<GameTimer> timers = new ArrayList<GameTimer>();
+		
+		Worker(int index)
+		{
+			super("GameScheduler-" + index);
+		}
+		
+		public void run()
+		{
+			while (running)
+			{
+				// Pick up newly started games, in lockstep they join on the next shared game tick
+				GameTimer t;
+				while ((t = added.poll()) != null)
+				{
+					t.begin(mode == LOCKSTEP && !timers.isEmpty() ? timers.get(0).next_game_tick : System.nanoTime());
+					timers.add(t);
+				}
+				
+				// Drop the games that have ended
+				for (int i = timers.size() - 1 ; i >= 0 ; i--)
+				{
+					if (!timers.get(i).isRunning())
+					{
+						timers.remove(i).finish();
+						liveGames.decrementAndGet();
+						stopIfAllEnded();
+					}
+				}
+				
+				if (timers.isEmpty())
+				{
+					LockSupport.park(this);
+					continue;
+				}
+				
+				parkUntil(mode == LOCKSTEP ? pumpLockstep() : pumpIndependent());
+			}
+		}
+		
+		/**
+		 * Pumps each game's timer on its own schedule
+		 *
+		 * @return The time the next game needs pumping
+		 */
+		private long pumpIndependent()
+		{
+			long deadline = Long.MAX_VALUE;
+			for (int i = 0 ; i < timers.size() ; i++)
+				deadline = Math.min(deadline, timers.get(i).pump());
+			return(deadline);
+		}
+		
+		/**
+		 * Runs the game ticks that are due for all the games together and then renders them
+		 *
+		 * @return The time the games next need pumping
+		 */
+		private long pumpLockstep()
+		{
+			GameTimer first = timers.get(0);
+			int loops = 0;
+			long now = System.nanoTime();
+			long catchUpStart = now;
+			long budget = first.getGame().maxCatchUpTime;
+			while (now > first.next_game_tick && loops < GameTimer.MAX_FRAMESKIP && (budget == 0 || now - catchUpStart < budget))
+			{
+				for (int i = 0 ; i < timers.size() ; i++)
+					now = timers.get(i).runTick(now);
+				loops++;
+			}
+			
+			long deadline = Long.MAX_VALUE;
+			for (int i = 0 ; i < timers.size() ; i++)
+			{
+				timers.get(i).endCatchUp(loops, now, false);
+				deadline = Math.min(deadline, timers.get(i).present(loops));
+			}
+			return(deadline);
+		}
+		
+		/**
+		 * Waits until the given deadline, waking early if a game is added or the scheduler is shut down
+		 */
+		private void parkUntil(long deadline)
+		{
+			long remaining = deadline - System.nanoTime();
+			while (remaining > GameTimer.SPIN_THRESHOLD && running && added.isEmpty())
+			{
+				LockSupport.parkNanos(this, remaining - GameTimer.SPIN_THRESHOLD);
+				remaining = deadline - System.nanoTime();
+			}
+			while (System.nanoTime() < deadline && running)
+			{
+				// Busy wait, giving up the CPU here could overshoot the deadline just as parking does
+			}
+		}
+	}
+}
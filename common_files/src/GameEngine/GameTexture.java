@@ -8,6 +8,12 @@ import java.nio.*;
  * Rather assign the same texture to a different GameObject then load it twice.
  * <p>
  * There is also ability to access the texture's byte data. This will allow you to perform bit-to-bit test using the alpha channel. Please note that byte data is stored such that the start of the array is the bottom left corner of the texture and the end is the top right with lines scanning left to right as normal for image data (so it's a normal representation but upside down). Take this into account when doing the tests.
+ * <p>
+ * For pixel perfect collision detection the alpha channel is also kept as a packed 1-bit mask, made when the texture is loaded
+ * (see getAlphaMask(), getFrameMasks() and PixelCollision). Comparing masks is far faster than reading the byte data.
+ * <p>
+ * Textures loaded with ResourceLoader.loadTextures() are regions of a shared atlas texture. They are used like any other texture,
+ * their size, byte data and alpha mask are their own, only the OpenGL texture and the texture coords are the atlas page's.
  *
  * @author Richard Baxter
  * @author Justin Crause
@@ -19,6 +25,22 @@ public class GameTexture
 	int w, h;
 	ByteBuffer bbuffer;
 	
+	// Where this texture lies on its atlas page, from the page's bottom left corner. The page size is 0 if the texture has its own
+	int regionX, regionY;
+	int pageW, pageH;
+	private TextureCoords coords;
+	
+	// True if every pixel is fully opaque, such sprites need not be drawn back to front (see SpriteBatch)
+	boolean opaque;
+	
+	// Headless textures have no GL texture, these coords are never drawn
+	private static final TextureCoords HEADLESS_COORDS = new TextureCoords(0.0f, 0.0f, 1.0f, 1.0f);
+	
+	// The packed alpha of the whole texture, and of the frames of the last sprite sheet layout asked for
+	private AlphaMask alphaMask;
+	private AlphaMask [] frameMasks;
+	private int frameMaskW, frameMaskH;
+	
 	//==============================================================================
 	
 	protected GameTexture()
@@ -50,6 +72,130 @@ public class GameTexture
 	
 	//==============================================================================
 	
+	/**
+	 * Builds the alpha mask of the whole texture. Called once the texture's size and byte data have been set
+	 */
+	void buildAlphaMask()
+	{
+		if (hasAlpha())
+		{
+			alphaMask = new AlphaMask(bbuffer, w, 0, 0, w, h);
+			
+			opaque = true;
+			for (int i = 3 ; i < w * h * 4 && opaque ; i += 4)
+				opaque = bbuffer.get(i) == (byte)0xFF;
+		}
+		else
+		{
+			// Images without an alpha channel (e.g. JPEGs) are loaded as RGB
+			alphaMask = new AlphaMask(w, h);
+			opaque = bbuffer != null;
+		}
+	}
+	
+	/**
+	 * Tells whether the byte data has an alpha channel, RGB images are loaded with 3 bytes per pixel
+	 */
+	private boolean hasAlpha()
+	{
+		return bbuffer != null && bbuffer.capacity() >= w * h * 4;
+	}
+	
+	/**
+	 * Gets the alpha mask of this texture, a pixel is solid if its alpha is not 0. A texture without byte data is solid everywhere
+	 * 
+	 * @return The mask of the whole texture
+	 */
+	public AlphaMask getAlphaMask()
+	{
+		if (alphaMask == null)
+			buildAlphaMask();
+		return alphaMask;
+	}
+	
+	/**
+	 * Gets the alpha masks of the frames of this texture used as a sprite sheet (see GameObject.addSpriteSheet()). The masks are
+	 * made the first time a layout is asked for and kept for the next objects using the same layout
+	 * 
+	 * @param frameW The width of a frame
+	 * @param frameH The height of a frame
+	 * @return The masks of the frames, a row at a time starting with the top row of the sheet
+	 */
+	public synchronized AlphaMask [] getFrameMasks(int frameW, int frameH)
+	{
+		if (frameMasks != null && frameMaskW == frameW && frameMaskH == frameH)
+			return frameMasks;
+		
+		int cols = Math.max(1, w / frameW), rows = Math.max(1, h / frameH);
+		AlphaMask [] masks = new AlphaMask [cols * rows];
+		for (int row = 0 ; row < rows ; row++)
+		{
+			for (int col = 0 ; col < cols ; col++)
+			{
+				// The byte data starts at the bottom, the rows of the sheet at the top
+				int x = col * frameW, y = h - (row + 1) * frameH;
+				if (hasAlpha() && x >= 0 && y >= 0)
+					masks[row * cols + col] = new AlphaMask(bbuffer, w, x, y, Math.min(frameW, w), Math.min(frameH, h));
+				else
+					masks[row * cols + col] = new AlphaMask(frameW, frameH);
+			}
+		}
+		
+		frameMasks = masks;
+		frameMaskW = frameW;
+		frameMaskH = frameH;
+		return frameMasks;
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Gets the texture coords of the whole texture
+	 */
+	TextureCoords getImageTexCoords()
+	{
+		if (coords == null)
+		{
+			if (pageW > 0)
+				coords = getSubImageTexCoords(0, 0, w, h);
+			else if (t != null)
+				coords = t.getImageTexCoords();
+			else
+				coords = HEADLESS_COORDS;
+		}
+		return coords;
+	}
+	
+	/**
+	 * Gets the texture coords of part of the texture (e.g. a frame of a sprite sheet)
+	 * 
+	 * @param x1 The left edge of the part
+	 * @param y1 The bottom edge of the part
+	 * @param x2 The right edge of the part
+	 * @param y2 The top edge of the part
+	 */
+	TextureCoords getSubImageTexCoords(int x1, int y1, int x2, int y2)
+	{
+		if (t != null)
+			return t.getSubImageTexCoords(regionX + x1, regionY + y1, regionX + x2, regionY + y2);
+		
+		// Headless textures have no GL texture, the coords are never drawn
+		int pw = pageW > 0 ? pageW : w, ph = pageH > 0 ? pageH : h;
+		return new TextureCoords((float)(regionX + x1) / pw, (float)(regionY + y1) / ph, (float)(regionX + x2) / pw, (float)(regionY + y2) / ph);
+	}
+	
+	/**
+	 * Tells whether this texture is a region of a shared atlas texture (see ResourceLoader.loadTextures())
+	 * 
+	 * @return True if the texture was packed into an atlas
+	 */
+	public boolean isPacked()
+	{
+		return pageW > 0;
+	}
+	
+	//==============================================================================
+	
 	/**
 	 * Gets the width of this texture
 	 * 
@@ -1,5 +1,6 @@
 package GameEngine;
 
+import java.util.concurrent.locks.LockSupport;
 import javax.media.opengl.*;
 import GameEngine.Game;
 
@@ -11,9 +12,33 @@ import GameEngine.Game;
  */
 class GameTimer extends Thread
 {
-	private boolean running;
+	// How close to a deadline (in nanoseconds) the parking scheduler stops parking and spins instead
+	static final long SPIN_THRESHOLD = 1000000L;
+	// The most game ticks run back to back before a frame is rendered
+	static final int MAX_FRAMESKIP = 15;
+	
+	private volatile boolean running;
+	// Set by endGame(), so a game ended before its timer begins never starts
+	private volatile boolean stopRequested = false;
 	private GLAutoDrawable drawer;
 	private Game game;
+	private Thread renderThread;
+	private long lastRender = 0;
+	
+	// Set when a GameScheduler drives this timer instead of it running on its own thread
+	GameScheduler scheduler = null;
+	
+	// The timing state, kept between calls to pump()
+	private long skipTicks;
+	long next_game_tick;
+	private long next_render;
+	private long lastTick = 0;
+	private boolean separateRender;
+	
+	// The adaptive tick rate looks at about a second's worth of game ticks at a time
+	private long windowLogicTime = 0;
+	private int windowTicks = 0;
+	private long windowDropped = 0;
 	
 	//==============================================================================
 	
@@ -21,7 +46,7 @@ class GameTimer extends Thread
 	 * Constructor that creates the timer object and stores the Game object
 	 *
 	 * @param g The Game item
-	 * @param d The OpenGL Drawer object
+	 * @param d The OpenGL Drawer object (null when the game is running headless)
 	 */
 	public GameTimer (Game g, GLAutoDrawable d)
 	{
@@ -36,28 +61,306 @@ class GameTimer extends Thread
 	 */
 	public void run()
 	{
-		final long TICKS_PER_SECOND = game.game_frames_per_second;
-		final long SKIP_TICKS = 1000000000L / TICKS_PER_SECOND;
-		final int MAX_FRAMESKIP = 15;
-		long next_game_tick = System.nanoTime();
-		int loops;
-		
-		running = true;
+		begin(System.nanoTime());
 		while (running)
+			parkUntil(pump());
+		finish();
+	}
+	
+	/**
+	 * Sets up the timing state, with the first game tick due at the given time. Called once before the first pump(), the timer
+	 * does not start running if endGame() has already been called
+	 *
+	 * @param start The time (as given by System.nanoTime()) the first game tick is due
+	 */
+	void begin(long start)
+	{
+		skipTicks = 1000000000L / game.game_frames_per_second;
+		next_game_tick = start;
+		next_render = start;
+		
+		game.tickLength = skipTicks;
+		game.nextTickTime = next_game_tick;
+		
+		running = !stopRequested;
+		
+		// When rendering on a separate thread this thread only runs the logic and records the snapshots
+		separateRender = (drawer != null && game.threadingMode == Game.THREADING_SEPARATE_RENDER);
+		if (separateRender && running)
 		{
-			loops = 0;
-			while(System.nanoTime() > next_game_tick && loops < MAX_FRAMESKIP)
+			renderThread = new RenderThread();
+			renderThread.start();
+		}
+	}
+	
+	/**
+	 * Runs the game ticks that are due (catching up if need be) and then renders a frame if one is due
+	 *
+	 * @return The time (as given by System.nanoTime()) at which the timer next needs to be pumped, or 0 to pump again straight away
+	 */
+	long pump()
+	{
+		int loops = 0;
+		long now = System.nanoTime();
+		long catchUpStart = now;
+		long budget = game.maxCatchUpTime;
+		while(now > next_game_tick && loops < MAX_FRAMESKIP && (budget == 0 || now - catchUpStart < budget))
+		{
+			now = runTick(now);
+			loops++;
+		}
+		endCatchUp(loops, now, true);
+		return(present(loops));
+	}
+	
+	/**
+	 * Runs a single game tick, recording its timings
+	 *
+	 * @param now The current time (as given by System.nanoTime())
+	 * @return The time the game tick finished
+	 */
+	long runTick(long now)
+	{
+		GameTimerStats stats = game.timerStats;
+		stats.tickJitter.record(now - next_game_tick);
+		if (lastTick != 0)
+			stats.tickInterval.record(now - lastTick);
+		lastTick = now;
+		
+		game.logicGame();
+		
+		next_game_tick += skipTicks;
+		long end = System.nanoTime();
+		stats.logicTime.record(end - now);
+		windowLogicTime += end - now;
+		windowTicks++;
+		return(end);
+	}
+	
+	/**
+	 * Finishes a run of game ticks: records the statistics, drops the game ticks that could not be caught up with and (if allowed)
+	 * adapts the tick rate
+	 *
+	 * @param loops The number of game ticks that were just run
+	 * @param now The time the last game tick finished
+	 * @param adapt False if the tick rate must not change (when ticking in lockstep with other games)
+	 */
+	void endCatchUp(int loops, long now, boolean adapt)
+	{
+		GameTimerStats stats = game.timerStats;
+		if (loops > 0)
+			stats.catchUpLoops.record(loops);
+		if (now > next_game_tick && loops > 0)
+		{
+			if (loops == MAX_FRAMESKIP)
+				stats.frameSkipLimitHits.incrementAndGet();
+			
+			// Still behind after using up the catch up allowance, so rather than carrying the time debt into the next frame
+			// (and the next, and the next...) the game ticks that are already due are dropped
+			long dropped = (now - next_game_tick) / skipTicks + 1;
+			next_game_tick += dropped * skipTicks;
+			stats.droppedTicks.addAndGet(dropped);
+			stats.discardedTime.addAndGet(dropped * skipTicks);
+			windowDropped += dropped;
+		}
+		
+		int gfps = game.game_frames_per_second;
+		if (windowTicks >= gfps)
+		{
+			int newGFPS = adapt ? adaptTickRate(gfps, windowLogicTime / windowTicks, windowDropped, skipTicks) : gfps;
+			if (newGFPS != gfps)
 			{
-				game.logicGame();
-				
-				next_game_tick += SKIP_TICKS;
-				loops++;
+				skipTicks = 1000000000L / newGFPS;
+				game.changeTickRate(newGFPS);
 			}
-			drawer.display();
+			windowLogicTime = 0;
+			windowTicks = 0;
+			windowDropped = 0;
+		}
+		game.nextTickTime = next_game_tick;
+	}
+	
+	/**
+	 * Renders a frame if one is due, following the scheduler mode and render cap
+	 *
+	 * @param loops The number of game ticks that were just run
+	 * @return The time (as given by System.nanoTime()) at which the timer next needs to be pumped, or 0 to pump again straight away
+	 */
+	long present(int loops)
+	{
+		if (separateRender)
+		{
+			if (loops > 0)
+			{
+				game.recordSnapshot();
+				LockSupport.unpark(renderThread);
+			}
+			return(next_game_tick);
+		}
+		else if (drawer == null)
+		{
+			// Nothing to render when running headless
+			return(next_game_tick);
+		}
+		else if (game.schedulerMode == Game.SCHEDULER_SPIN)
+		{
+			display();
+			return(0);
 		}
 		
-		// Cleanup
-		System.exit(0);
+		// Without a cap only render frames that have something new in them
+		int renderCap = game.renderCap;
+		if (renderCap <= 0)
+		{
+			if (loops > 0)
+				display();
+			return(next_game_tick);
+		}
+		
+		long now = System.nanoTime();
+		long renderInterval = 1000000000L / renderCap;
+		if (now >= next_render)
+		{
+			display();
+			
+			// Don't try make up for missed frames, just schedule the next one
+			next_render += renderInterval;
+			if (next_render < now)
+				next_render = now + renderInterval;
+		}
+		return(Math.min(next_game_tick, next_render));
+	}
+	
+	/**
+	 * Cleans up once the game has ended. A game on its own in a window takes the JVM down with it, but a headless game (or one sharing
+	 * a GameScheduler with others) leaves the JVM to whoever is running it
+	 */
+	void finish()
+	{
+		game.shutdownUpdatePool();
+		if (drawer != null && scheduler == null)
+			System.exit(0);
+	}
+	
+	/**
+	 * Returns whether the game is still running
+	 */
+	boolean isRunning()
+	{
+		return(running);
+	}
+	
+	/**
+	 * Returns the game this timer is driving
+	 */
+	Game getGame()
+	{
+		return(game);
+	}
+	
+	/**
+	 * Works out the GFPS the game should run at next, from how the last second or so of game ticks went (see Game.setAdaptiveTickRate()).
+	 * The GFPS is lowered by a quarter when game ticks had to be dropped or the logicStep() took up most of a game tick, and raised
+	 * by a quarter (up to the requested GFPS) when the logicStep() would still take less than half of a game tick at the higher rate
+	 *
+	 * @param gfps The current GFPS
+	 * @param meanLogicTime The mean time the logicStep() took, in nanoseconds
+	 * @param dropped The number of game ticks that were dropped
+	 * @param tickLength The current length of a game tick, in nanoseconds
+	 * @return The new GFPS
+	 */
+	private int adaptTickRate(int gfps, long meanLogicTime, long dropped, long tickLength)
+	{
+		int minGFPS = game.minGFPS;
+		int maxGFPS = game.getRequestedGFPS();
+		if (minGFPS <= 0)
+			return(maxGFPS);
+		
+		if (dropped > 0 || meanLogicTime > tickLength * 9 / 10)
+			return(Math.max(minGFPS, Math.min(gfps - 1, gfps * 3 / 4)));
+		
+		int higher = Math.min(maxGFPS, Math.max(gfps + 1, gfps * 5 / 4));
+		if (higher > gfps && meanLogicTime < 1000000000L / higher / 2)
+			return(higher);
+		return(gfps);
+	}
+	
+	/**
+	 * Renders a frame, recording how long it took. Only one thread ever renders
+	 */
+	private void display()
+	{
+		long start = System.nanoTime();
+		drawer.display();
+		game.timerStats.renderTime.record(System.nanoTime() - start);
+		
+		if (lastRender != 0)
+			game.timerStats.frameInterval.record(start - lastRender);
+		lastRender = start;
+	}
+	
+	/**
+	 * Waits until the given deadline without using the CPU. The thread is parked until shortly before the deadline and then
+	 * spins for the last little bit, as parking can overshoot by a fair amount on some operating systems.
+	 *
+	 * @param deadline The time (in nanoseconds, as given by System.nanoTime()) to wait until
+	 */
+	private void parkUntil(long deadline)
+	{
+		long remaining = deadline - System.nanoTime();
+		while (remaining > SPIN_THRESHOLD && running)
+		{
+			LockSupport.parkNanos(remaining - SPIN_THRESHOLD);
+			remaining = deadline - System.nanoTime();
+		}
+		while (System.nanoTime() < deadline && running)
+		{
+			// Busy wait, giving up the CPU here could overshoot the deadline just as parking does
+		}
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * The render thread used with Game.THREADING_SEPARATE_RENDER. It draws the latest snapshot published by the logic thread,
+	 * following the same scheduler mode and render cap as the single threaded timer
+	 */
+	private class RenderThread extends Thread
+	{
+		public void run()
+		{
+			long next_render = System.nanoTime();
+			while (running)
+			{
+				int renderCap = game.renderCap;
+				if (game.schedulerMode == Game.SCHEDULER_SPIN)
+				{
+					display();
+				}
+				else if (renderCap <= 0)
+				{
+					// Only render when there is a new snapshot, the logic thread wakes us up when it publishes one
+					if (game.snapshots.hasFresh())
+						display();
+					else
+						LockSupport.parkNanos(this, 100000000L);
+				}
+				else
+				{
+					long now = System.nanoTime();
+					long renderInterval = 1000000000L / renderCap;
+					if (now >= next_render)
+					{
+						display();
+						
+						next_render += renderInterval;
+						if (next_render < now)
+							next_render = now + renderInterval;
+					}
+					parkUntil(next_render);
+				}
+			}
+		}
 	}
 	
 	//==============================================================================
@@ -68,6 +371,9 @@ class GameTimer extends Thread
 	public void endGame()
 	{
 		System.out.println("GameTimer.endGame() called");
+		stopRequested = true;
 		running = false;
+		if (renderThread != null)
+			LockSupport.unpark(renderThread);
 	}
 }
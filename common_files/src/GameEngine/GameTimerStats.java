@@ -0,0 +1,262 @@
+package GameEngine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The timing statistics recorded by the game timer. Get these from Game.getTimerStats().
+ * <p>
+ * Every game tick and every rendered frame is timed and the results kept in TimingHistograms, each holding a sliding window of the
+ * most recent samples so percentiles (e.g. the median and 99th percentile) and the maximum can be queried at any time from any thread.
+ * This makes it possible to keep an eye on the game's performance in a released game and raise an alarm when it gets worse.
+ * <p>
+ * The recorded statistics are:
+ * <p>
+ * - The tick jitter, how late (in nanoseconds) each game tick ran compared to when it was scheduled. With a steady GFPS this
+ * should stay well below one tick (1/GFPS seconds). It can be used to compare the scheduler modes (see Game.setSchedulerMode()).
+ * <p>
+ * - The logic time, how long (in nanoseconds) each call to logicStep() took.
+ * <p>
+ * - The render time, how long (in nanoseconds) each frame took to render (including the renderStep()).
+ * <p>
+ * - The tick and frame intervals, the time (in nanoseconds) between consecutive game ticks and frames. These give the tick rate
+ * and frame rate actually achieved.
+ * <p>
+ * - The catch up loops, how many game ticks were run back to back before each frame. This is 1 when the game keeps up, larger
+ * values mean the game fell behind and had to catch up (up to 15 game ticks are run before a frame is rendered).
+ * <p>
+ * - The frame skip limit hits, how many times the game was still behind after running 15 game ticks back to back.
+ * <p>
+ * - The dropped ticks and discarded time, the game ticks (and the game time they stand for) that were skipped because the game
+ * was still behind after catching up for as long as it is allowed to (see Game.setMaxCatchUpTime()).
+ * <p>
+ * - The tick rate changes, how many times the adaptive tick rate changed the GFPS (see Game.setAdaptiveTickRate()).
+ * <p>
+ * - The tick and frame allocations, how many bytes each game tick and frame allocated, and how many times they went over the
+ * allocation budget. These are only recorded while the allocation budget debug mode is on (see Game.setAllocationBudget()).
+ *
+ * @see Game
+ * @see TimingHistogram
+ */
+public class GameTimerStats
+{
+	/**
+	 * The number of recent samples kept by each histogram
+	 */
+	public static final int WINDOW_SIZE = 1024;
+	
+	TimingHistogram tickJitter = new TimingHistogram(WINDOW_SIZE);
+	TimingHistogram logicTime = new TimingHistogram(WINDOW_SIZE);
+	TimingHistogram renderTime = new TimingHistogram(WINDOW_SIZE);
+	TimingHistogram tickInterval = new TimingHistogram(WINDOW_SIZE);
+	TimingHistogram frameInterval = new TimingHistogram(WINDOW_SIZE);
+	TimingHistogram catchUpLoops = new TimingHistogram(WINDOW_SIZE);
+	AtomicLong frameSkipLimitHits = new AtomicLong(0);
+	AtomicLong droppedTicks = new AtomicLong(0);
+	AtomicLong discardedTime = new AtomicLong(0);
+	AtomicLong tickRateChanges = new AtomicLong(0);
+	TimingHistogram tickAllocation = new TimingHistogram(WINDOW_SIZE);
+	TimingHistogram frameAllocation = new TimingHistogram(WINDOW_SIZE);
+	AtomicLong allocationBudgetExceeded = new AtomicLong(0);
+	
+	//==============================================================================
+	
+	GameTimerStats()
+	{
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns how late each game tick ran compared to when it was scheduled
+	 *
+	 * @return The tick lateness in nanoseconds
+	 */
+	public TimingHistogram getTickJitter()
+	{
+		return(tickJitter);
+	}
+	
+	/**
+	 * Returns how long each call to logicStep() took
+	 *
+	 * @return The logic times in nanoseconds
+	 */
+	public TimingHistogram getLogicTime()
+	{
+		return(logicTime);
+	}
+	
+	/**
+	 * Returns how long each frame took to render
+	 *
+	 * @return The render times in nanoseconds
+	 */
+	public TimingHistogram getRenderTime()
+	{
+		return(renderTime);
+	}
+	
+	/**
+	 * Returns the time between consecutive game ticks
+	 *
+	 * @return The tick intervals in nanoseconds
+	 */
+	public TimingHistogram getTickInterval()
+	{
+		return(tickInterval);
+	}
+	
+	/**
+	 * Returns the time between consecutive frames
+	 *
+	 * @return The frame intervals in nanoseconds
+	 */
+	public TimingHistogram getFrameInterval()
+	{
+		return(frameInterval);
+	}
+	
+	/**
+	 * Returns how many game ticks were run back to back before each frame (these samples are counts, not nanoseconds)
+	 *
+	 * @return The number of game ticks run per frame
+	 */
+	public TimingHistogram getCatchUpLoops()
+	{
+		return(catchUpLoops);
+	}
+	
+	/**
+	 * Returns how many times the game was still behind after running the maximum number of game ticks back to back
+	 *
+	 * @return The number of times the frame skip limit was hit
+	 */
+	public long getFrameSkipLimitHits()
+	{
+		return(frameSkipLimitHits.get());
+	}
+	
+	/**
+	 * Returns how many game ticks were dropped because the game could not catch up with them
+	 *
+	 * @return The number of dropped game ticks
+	 */
+	public long getDroppedTicks()
+	{
+		return(droppedTicks.get());
+	}
+	
+	/**
+	 * Returns the total game time that was discarded along with the dropped game ticks
+	 *
+	 * @return The discarded time in nanoseconds
+	 */
+	public long getDiscardedTime()
+	{
+		return(discardedTime.get());
+	}
+	
+	/**
+	 * Returns how many times the adaptive tick rate changed the GFPS
+	 *
+	 * @return The number of tick rate changes
+	 */
+	public long getTickRateChanges()
+	{
+		return(tickRateChanges.get());
+	}
+	
+	/**
+	 * Returns how many bytes each game tick allocated (these samples are bytes, not nanoseconds)
+	 *
+	 * @return The bytes allocated per game tick
+	 */
+	public TimingHistogram getTickAllocation()
+	{
+		return(tickAllocation);
+	}
+	
+	/**
+	 * Returns how many bytes each frame allocated (these samples are bytes, not nanoseconds)
+	 *
+	 * @return The bytes allocated per frame
+	 */
+	public TimingHistogram getFrameAllocation()
+	{
+		return(frameAllocation);
+	}
+	
+	/**
+	 * Returns how many game ticks and frames allocated more than the allocation budget
+	 *
+	 * @return The number of times the allocation budget was exceeded
+	 */
+	public long getAllocationBudgetExceeded()
+	{
+		return(allocationBudgetExceeded.get());
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns the number of game ticks per second actually achieved recently
+	 *
+	 * @return The achieved game ticks per second, 0 if no game ticks have run yet
+	 */
+	public double getAchievedTickRate()
+	{
+		long mean = tickInterval.getMean();
+		return(mean == 0 ? 0.0 : 1000000000.0 / mean);
+	}
+	
+	/**
+	 * Returns the number of frames per second actually rendered recently
+	 *
+	 * @return The achieved frames per second, 0 if no frames have been rendered yet
+	 */
+	public double getAchievedFrameRate()
+	{
+		long mean = frameInterval.getMean();
+		return(mean == 0 ? 0.0 : 1000000000.0 / mean);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Clears all the recorded statistics
+	 */
+	public void reset()
+	{
+		tickJitter.reset();
+		logicTime.reset();
+		renderTime.reset();
+		tickInterval.reset();
+		frameInterval.reset();
+		catchUpLoops.reset();
+		frameSkipLimitHits.set(0);
+		droppedTicks.set(0);
+		discardedTime.set(0);
+		tickRateChanges.set(0);
+		tickAllocation.reset();
+		frameAllocation.reset();
+		allocationBudgetExceeded.set(0);
+	}
+	
+	//==============================================================================
+	
+	public String toString()
+	{
+		return(String.format("%.1f GFPS, %.1f FPS%n", getAchievedTickRate(), getAchievedFrameRate()) +
+				"tick jitter: " + tickJitter + "\n" +
+				"logic time: " + logicTime + "\n" +
+				"render time: " + renderTime + "\n" +
+				"catch up loops: p50=" + catchUpLoops.getPercentile(50.0) + " p99=" + catchUpLoops.getPercentile(99.0) + " max=" + catchUpLoops.getMax() +
+				", frame skip limit hits: " + getFrameSkipLimitHits() + "\n" +
+				"dropped ticks: " + getDroppedTicks() + String.format(" (%.1fms discarded)", getDiscardedTime() / 1000000.0) +
+				", tick rate changes: " + getTickRateChanges() +
+				(tickAllocation.getCount() == 0 && frameAllocation.getCount() == 0 ? "" :
+				"\nallocated bytes: tick p99=" + tickAllocation.getPercentile(99.0) + " max=" + tickAllocation.getMax() +
+				", frame p99=" + frameAllocation.getPercentile(99.0) + " max=" + frameAllocation.getMax() +
+				", budget exceeded: " + getAllocationBudgetExceeded()));
+	}
+}
@@ -0,0 +1,212 @@
+package GameEngine;
+
+/**
+ * Holds the GameObjects of a game. Use this in place of a Vector of GameObjects.
+ * <p>
+ * Destroyed objects (see GameObject.setMarkedForDestruction()) are not removed one at a time, instead removeDestroyed() removes all of
+ * them in a single pass over the objects, once per game tick. The remaining objects keep their order.
+ * <p>
+ * Objects added while the world is being iterated over (between beginIteration() and endIteration(), e.g. a bullet fired from an
+ * object's doTimeStep() while Game.doTimeSteps() is running) are queued and only join the world when the iteration ends, so a loop
+ * over the world never sees the world change under it.
+ * <p>
+ * The objects are kept in a plain array, so looping over them with size() and get() creates no garbage and takes no locks.
+ * <p>
+ * E.g:<p>
+ * <code> for (int i = 0 ; i < world.size() ; i++)</code><p>
+ * <code> &nbsp;&nbsp;&nbsp;&nbsp;drawer.draw(world.get(i), 0);</code><p>
+ *
+ * @see GameObject
+ * @see Game
+ */
+public class GameWorld
+{
+	private GameObject [] objects;
+	private int count = 0;
+	
+	// Objects added during an iteration
+	private GameObject [] spawned = new GameObject [64];
+	private int spawnCount = 0;
+	private int iterating = 0;
+	
+	//==============================================================================
+	
+	/**
+	 * Creates an empty world
+	 */
+	public GameWorld()
+	{
+		this(256);
+	}
+	
+	/**
+	 * Creates an empty world with room for the given number of objects (it grows as needed)
+	 *
+	 * @param capacity The number of objects to make room for
+	 */
+	public GameWorld(int capacity)
+	{
+		objects = new GameObject [Math.max(16, capacity)];
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Adds an object to the world. If the world is being iterated over the object is queued and joins at the end of the iteration
+	 *
+	 * @param o The object to add
+	 */
+	public void add(GameObject o)
+	{
+		if (iterating > 0)
+		{
+			if (spawnCount == spawned.length)
+				spawned = grow(spawned, spawnCount * 2);
+			spawned[spawnCount++] = o;
+		}
+		else
+		{
+			append(o);
+		}
+	}
+	
+	private void append(GameObject o)
+	{
+		if (count == objects.length)
+			objects = grow(objects, count * 2);
+		objects[count++] = o;
+	}
+	
+	private static GameObject [] grow(GameObject [] a, int n)
+	{
+		GameObject [] b = new GameObject [n];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return(b);
+	}
+	
+	/**
+	 * Returns the number of objects in the world (not counting queued objects)
+	 *
+	 * @return The number of objects
+	 */
+	public int size()
+	{
+		return(count);
+	}
+	
+	/**
+	 * Returns an object in the world
+	 *
+	 * @param i The index of the object, from 0 to size()-1
+	 * @return The object
+	 */
+	public GameObject get(int i)
+	{
+		if (i >= count)
+			throw new IndexOutOfBoundsException("Index " + i + ", size " + count);
+		return(objects[i]);
+	}
+	
+	/**
+	 * Returns the number of objects queued to join the world at the end of the current iteration
+	 *
+	 * @return The number of queued objects
+	 */
+	public int getQueuedCount()
+	{
+		return(spawnCount);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Marks the start of a loop over the world, objects added until endIteration() are queued. Iterations may be nested
+	 */
+	public void beginIteration()
+	{
+		iterating++;
+	}
+	
+	/**
+	 * Marks the end of a loop over the world. When the outermost iteration ends the queued objects join the world
+	 */
+	public void endIteration()
+	{
+		if (iterating == 0)
+			throw new IllegalStateException("endIteration() called without beginIteration()");
+		iterating--;
+		if (iterating == 0)
+			addQueued();
+	}
+	
+	/**
+	 * Moves the queued objects into the world
+	 */
+	private void addQueued()
+	{
+		for (int i = 0 ; i < spawnCount ; i++)
+		{
+			append(spawned[i]);
+			spawned[i] = null;
+		}
+		spawnCount = 0;
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Removes every object marked for destruction, in one pass over the world. The remaining objects keep their order.
+	 * Removed objects are also taken out of their EntityStore and AABBTree, if they are in them, and given back to their
+	 * GameObjectPool, if they came from one.
+	 * Call this once per game tick, after the collision detection
+	 *
+	 * @return The number of objects removed
+	 */
+	public int removeDestroyed()
+	{
+		if (iterating > 0)
+			throw new IllegalStateException("Objects can not be removed while the world is being iterated over");
+		
+		int kept = 0;
+		for (int i = 0 ; i < count ; i++)
+		{
+			GameObject o = objects[i];
+			if (!o.isMarkedForDestruction())
+				objects[kept++] = o;
+			else if (o.pool != null)
+				o.pool.releaseObject(o);
+			else
+				o.detach();
+		}
+		int removed = count - kept;
+		
+		// Let the removed objects be collected
+		for (int i = kept ; i < count ; i++)
+			objects[i] = null;
+		count = kept;
+		return(removed);
+	}
+	
+	/**
+	 * Removes every object from the world, including queued objects
+	 */
+	public void clear()
+	{
+		for (int i = 0 ; i < count ; i++)
+			objects[i] = null;
+		for (int i = 0 ; i < spawnCount ; i++)
+			spawned[i] = null;
+		count = 0;
+		spawnCount = 0;
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns the array holding the objects, only the first size() entries are used
+	 */
+	GameObject [] array()
+	{
+		return(objects);
+	}
+}
@@ -0,0 +1,113 @@
+package GameEngine;
+
+import java.awt.Dimension;
+import javax.media.opengl.GL;
+
+/**
+ * Runs a Game without a window, OpenGL or OpenAL. This is used for server-side simulations, soak tests and benchmarks
+ * on machines without a display or graphics card.
+ * <p>
+ * The game's initStep() is called when the runner is created. Textures are only decoded into their byte buffers (so
+ * the width, height and pixel data are available for collision detection) and fonts only provide their bounds.
+ * The renderStep() is only called by render() and all audio calls are ignored.
+ * <p>
+ * The game can either be ticked at its GFPS on the game timer thread with start(), or as fast as possible on the
+ * calling thread with runTicks().
+ * <p>
+ * E.g:<p>
+ * <code> FantasticGame fanGame = new FantasticGame(100);</code><p>
+ * <code> HeadlessRunner runner = new HeadlessRunner(fanGame);</code><p>
+ * <code> runner.runTicks(10000);</code><p>
+ *
+ * @see Game
+ */
+public class HeadlessRunner
+{
+	private Game game;
+	private boolean started = false;
+	
+	//==============================================================================
+	
+	/**
+	 * Creates the runner and initialises the game (initStep() is called)
+	 *
+	 * @param g The Game that is to be run
+	 */
+	public HeadlessRunner(Game g)
+	{
+		game = g;
+		game.startHeadless();
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Sets the viewport dimension the game will see from getViewportDimension(). There is no window so this defaults to 1x1
+	 *
+	 * @param width The width of the pretend viewport
+	 * @param height The height of the pretend viewport
+	 */
+	public void setViewportDimension(int width, int height)
+	{
+		game.setViewPortDimension(new Dimension(width, height));
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Starts ticking the game at its GFPS on the game timer thread. Use Game.endGame() to stop it
+	 */
+	public void start()
+	{
+		if (started)
+			return;
+		started = true;
+		game.startTimer();
+	}
+	
+	/**
+	 * Runs a single logic step on the calling thread
+	 */
+	public void tick()
+	{
+		game.logicGame();
+	}
+	
+	/**
+	 * Runs the given number of logic steps back to back (as fast as possible) on the calling thread
+	 *
+	 * @param ticks The number of logic steps to run
+	 * @return The time taken in nanoseconds
+	 */
+	public long runTicks(long ticks)
+	{
+		long start = System.nanoTime();
+		for (long i = 0 ; i < ticks ; i++)
+			game.logicGame();
+		return(System.nanoTime() - start);
+	}
+	
+	/**
+	 * Renders a frame of the game into the given GL on the calling thread, e.g. a GLCallCounter's GL to measure the rendering.
+	 * There is no TextRenderer headless, so the text drawn in the frame only sets its colour and is then dropped
+	 *
+	 * @param gl The GL to render into
+	 */
+	public void render(GL gl)
+	{
+		game.renderGame(gl);
+		game.fr.processFontDraws(gl);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns the game being run
+	 *
+	 * @return The Game
+	 */
+	public Game getGame()
+	{
+		return(game);
+	}
+}
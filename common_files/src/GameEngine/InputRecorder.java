@@ -0,0 +1,256 @@
+package GameEngine;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * Records the keyboard and mouse input of a Game, game tick by game tick, to a file so the session can be played back exactly
+ * with an InputReplayer. This is useful for reproducing bugs and for using recorded sessions as repeatable benchmarks.
+ * <p>
+ * The input state is saved just before each logicStep() so the replayed game sees exactly what the recorded game saw. Only what
+ * changed since the previous game tick is written, so a game tick without any input takes up a single byte.
+ * <p>
+ * For the replay to match, the game's logic must only depend on its input and on Game.getRandom() (not on Math.random() or
+ * the system time). The seed of Game.getRandom() is saved in the recording.
+ * <p>
+ * E.g:<p>
+ * <code> InputRecorder recorder = new InputRecorder(fanGame, new File("session.rec"));</code><p>
+ * <code> ...</code><p>
+ * <code> recorder.close();</code><p>
+ *
+ * @see InputReplayer
+ */
+public class InputRecorder
+{
+	// File format
+	static final int MAGIC = 0x47454952; // "GEIR"
+	static final int VERSION = 1;
+	
+	// Flags saying which parts of the input state follow in a game tick record
+	static final int KEYS_DOWN = 1;
+	static final int MOUSE_DOWN = 2;
+	static final int KEYS_TYPED = 4;
+	static final int MOUSE_CLICKED = 8;
+	static final int MOUSE_POS = 16;
+	static final int WHEEL = 32;
+	static final int MOUSE_FLAGS = 64;
+	static final int VIEWPORT = 128;
+	
+	// The bits of the mouse flags
+	static final int FLAG_DRAGGED = 1;
+	static final int FLAG_MOVED = 2;
+	static final int FLAG_IN_WINDOW = 4;
+	
+	private Game game;
+	private FileChannel channel;
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+	private long ticks = 0;
+	
+	// The input state as of the previous game tick
+	private boolean [] keyDown = new boolean [512];
+	private boolean [] mouseDown = new boolean [4];
+	private int mouseX = 0, mouseY = 0;
+	private int mouseFlags = 0;
+	private int viewW = 1, viewH = 1;
+	
+	//==============================================================================
+	
+	/**
+	 * Starts recording the input of a game to a file. Recording starts with the next game tick. For the replay to match the
+	 * recording should be started before the game is handed to its GameCanvas, as the replay runs the initStep() again
+	 *
+	 * @param g The Game to record
+	 * @param file The file to write the recording to (it is overwritten)
+	 * @throws IOException If the file could not be created
+	 */
+	public InputRecorder(Game g, File file) throws IOException
+	{
+		game = g;
+		channel = new FileOutputStream(file).getChannel();
+		
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(game.game_frames_per_second);
+		buffer.putLong(game.getRandomSeed());
+		
+		synchronized (game)
+		{
+			game.inputRecorder = this;
+		}
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Writes the input state for one game tick. Called by the game just before the logicStep (while holding the game's lock)
+	 */
+	void recordTick()
+	{
+		try
+		{
+			int flags = 0;
+			int keyChanges = 0;
+			for (int i = 0 ; i < keyDown.length ; i++)
+				if (keyDown[i] != game.keyDownVec[i])
+					keyChanges++;
+			int mouseChanges = 0;
+			for (int i = 0 ; i < mouseDown.length ; i++)
+				if (mouseDown[i] != game.mouseDownVec[i])
+					mouseChanges++;
+			int newMouseFlags = (game.mouseDragged ? FLAG_DRAGGED : 0) | (game.mouseMoved ? FLAG_MOVED : 0) | (game.mouseInWindow ? FLAG_IN_WINDOW : 0);
+			
+			if (keyChanges > 0)
+				flags |= KEYS_DOWN;
+			if (mouseChanges > 0)
+				flags |= MOUSE_DOWN;
+			if (!game.keyTypedStack.isEmpty())
+				flags |= KEYS_TYPED;
+			if (!game.mouseClickedStack.isEmpty())
+				flags |= MOUSE_CLICKED;
+			if (game.mousePos.x != mouseX || game.mousePos.y != mouseY)
+				flags |= MOUSE_POS;
+			if (game.scrollAmount != 0 || game.scrollType != 0 || game.unitsToScroll != 0 || game.wheelRotation != 0)
+				flags |= WHEEL;
+			if (newMouseFlags != mouseFlags)
+				flags |= MOUSE_FLAGS;
+			if (game.viewPortDimension.width != viewW || game.viewPortDimension.height != viewH)
+				flags |= VIEWPORT;
+			
+			// Make sure the whole game tick fits in the buffer
+			ensureSpace(1 + 2 + keyChanges * 2 + 1 + mouseChanges + 2 + game.keyTypedStack.size() * 2 + 1 + game.mouseClickedStack.size() + 8 + 16 + 1 + 8);
+			
+			buffer.put((byte)flags);
+			if ((flags & KEYS_DOWN) != 0)
+			{
+				// Key code with the top bit set if the key is now down
+				buffer.putShort((short)keyChanges);
+				for (int i = 0 ; i < keyDown.length ; i++)
+				{
+					if (keyDown[i] != game.keyDownVec[i])
+					{
+						keyDown[i] = game.keyDownVec[i];
+						buffer.putShort((short)(i | (keyDown[i] ? 0x8000 : 0)));
+					}
+				}
+			}
+			if ((flags & MOUSE_DOWN) != 0)
+			{
+				buffer.put((byte)mouseChanges);
+				for (int i = 0 ; i < mouseDown.length ; i++)
+				{
+					if (mouseDown[i] != game.mouseDownVec[i])
+					{
+						mouseDown[i] = game.mouseDownVec[i];
+						buffer.put((byte)(i | (mouseDown[i] ? 0x80 : 0)));
+					}
+				}
+			}
+			if ((flags & KEYS_TYPED) != 0)
+			{
+				buffer.putShort((short)game.keyTypedStack.size());
+				for (int i = 0 ; i < game.keyTypedStack.size() ; i++)
+					buffer.putShort(game.keyTypedStack.get(i).shortValue());
+			}
+			if ((flags & MOUSE_CLICKED) != 0)
+			{
+				buffer.put((byte)game.mouseClickedStack.size());
+				for (int i = 0 ; i < game.mouseClickedStack.size() ; i++)
+					buffer.put(game.mouseClickedStack.get(i).byteValue());
+			}
+			if ((flags & MOUSE_POS) != 0)
+			{
+				mouseX = game.mousePos.x;
+				mouseY = game.mousePos.y;
+				buffer.putInt(mouseX);
+				buffer.putInt(mouseY);
+			}
+			if ((flags & WHEEL) != 0)
+			{
+				buffer.putInt(game.scrollAmount);
+				buffer.putInt(game.scrollType);
+				buffer.putInt(game.unitsToScroll);
+				buffer.putInt(game.wheelRotation);
+			}
+			if ((flags & MOUSE_FLAGS) != 0)
+			{
+				mouseFlags = newMouseFlags;
+				buffer.put((byte)mouseFlags);
+			}
+			if ((flags & VIEWPORT) != 0)
+			{
+				viewW = game.viewPortDimension.width;
+				viewH = game.viewPortDimension.height;
+				buffer.putInt(viewW);
+				buffer.putInt(viewH);
+			}
+			ticks++;
+		}
+		catch (IOException e)
+		{
+			// Don't take the game down with the recording
+			System.err.println("Error writing input recording, recording stopped: " + e.getMessage());
+			game.inputRecorder = null;
+		}
+	}
+	
+	/**
+	 * Writes the buffer out to the file if there is not enough space left in it
+	 */
+	private void ensureSpace(int bytes) throws IOException
+	{
+		if (buffer.remaining() >= bytes)
+			return;
+		
+		flush();
+		if (buffer.capacity() < bytes)
+		{
+			buffer = ByteBuffer.allocateDirect(bytes);
+		}
+	}
+	
+	/**
+	 * Writes everything in the buffer to the file
+	 */
+	private void flush() throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns the number of game ticks recorded so far
+	 *
+	 * @return The number of game ticks
+	 */
+	public long getTicksRecorded()
+	{
+		return(ticks);
+	}
+	
+	/**
+	 * Stops recording and closes the file
+	 *
+	 * @throws IOException If the end of the recording could not be written
+	 */
+	public void close() throws IOException
+	{
+		synchronized (game)
+		{
+			if (game.inputRecorder == this)
+				game.inputRecorder = null;
+		}
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+}
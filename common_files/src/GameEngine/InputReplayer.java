@@ -0,0 +1,245 @@
+package GameEngine;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * Plays back a session recorded by an InputRecorder. Each game tick the recorded input is put back into the game just before its
+ * logicStep() so the game behaves exactly as it did when it was recorded (as long as its logic only depends on its input and on
+ * Game.getRandom()).
+ * <p>
+ * A recording is usually replayed headless, as fast as possible, to reproduce a bug or as a repeatable benchmark:
+ * <p>
+ * E.g:<p>
+ * <code> InputReplayer replayer = new InputReplayer(new File("session.rec"));</code><p>
+ * <code> HeadlessRunner runner = replayer.createRunner(new FantasticGame(100));</code><p>
+ * <code> replayer.replay(runner);</code><p>
+ *
+ * @see InputRecorder
+ * @see HeadlessRunner
+ */
+public class InputReplayer
+{
+	private FileChannel channel;
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+	private boolean endOfFile = false;
+	
+	private int gfps;
+	private long randomSeed;
+	private long ticks = 0;
+	
+	// Flags that are held from tick to tick (the game clears dragged and moved after every logicStep)
+	private int mouseFlags = 0;
+	
+	//==============================================================================
+	
+	/**
+	 * Opens a recording
+	 *
+	 * @param file The file written by an InputRecorder
+	 * @throws IOException If the file could not be read or is not a recording
+	 */
+	public InputReplayer(File file) throws IOException
+	{
+		channel = new FileInputStream(file).getChannel();
+		buffer.flip();
+		
+		if (!fill(20) || buffer.getInt() != InputRecorder.MAGIC)
+			throw new IOException(file + " is not an input recording");
+		int version = buffer.getInt();
+		if (version != InputRecorder.VERSION)
+			throw new IOException("Unsupported input recording version " + version);
+		gfps = buffer.getInt();
+		randomSeed = buffer.getLong();
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Makes sure there are at least the given number of bytes in the buffer, reading more from the file if needed
+	 *
+	 * @return False if the file ended first
+	 */
+	private boolean fill(int bytes) throws IOException
+	{
+		if (buffer.remaining() >= bytes)
+			return(true);
+		
+		buffer.compact();
+		while (buffer.position() < bytes && !endOfFile)
+		{
+			if (channel.read(buffer) < 0)
+				endOfFile = true;
+		}
+		buffer.flip();
+		return(buffer.remaining() >= bytes);
+	}
+	
+	/**
+	 * Like fill() but the bytes must be there, the recording is cut short otherwise
+	 */
+	private void need(int bytes) throws IOException
+	{
+		if (!fill(bytes))
+			throw new EOFException("Input recording ended part way through game tick " + ticks);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Puts the input recorded for the next game tick into the game. Call this just before the game's next logic step
+	 *
+	 * @param g The game being replayed into
+	 * @return False if the end of the recording has been reached
+	 * @throws IOException If the recording could not be read
+	 */
+	public boolean applyNextTick(Game g) throws IOException
+	{
+		if (!fill(1))
+			return(false);
+		
+		synchronized (g)
+		{
+			int flags = buffer.get() & 0xFF;
+			if ((flags & InputRecorder.KEYS_DOWN) != 0)
+			{
+				need(2);
+				int n = buffer.getShort() & 0xFFFF;
+				need(n * 2);
+				for (int i = 0 ; i < n ; i++)
+				{
+					int k = buffer.getShort() & 0xFFFF;
+					g.registerKeyDown(k & 0x7FFF, (k & 0x8000) != 0);
+				}
+			}
+			if ((flags & InputRecorder.MOUSE_DOWN) != 0)
+			{
+				need(1);
+				int n = buffer.get() & 0xFF;
+				need(n);
+				for (int i = 0 ; i < n ; i++)
+				{
+					int b = buffer.get() & 0xFF;
+					g.registerMouseDown(b & 0x7F, (b & 0x80) != 0);
+				}
+			}
+			if ((flags & InputRecorder.KEYS_TYPED) != 0)
+			{
+				need(2);
+				int n = buffer.getShort() & 0xFFFF;
+				need(n * 2);
+				for (int i = 0 ; i < n ; i++)
+					g.registerKeyTyped(buffer.getShort());
+			}
+			if ((flags & InputRecorder.MOUSE_CLICKED) != 0)
+			{
+				need(1);
+				int n = buffer.get() & 0xFF;
+				need(n);
+				for (int i = 0 ; i < n ; i++)
+					g.registerMouseClicked(buffer.get());
+			}
+			if ((flags & InputRecorder.MOUSE_POS) != 0)
+			{
+				// Already flipped to the game's coordinates when it was recorded
+				need(8);
+				g.mousePos.x = buffer.getInt();
+				g.mousePos.y = buffer.getInt();
+			}
+			if ((flags & InputRecorder.WHEEL) != 0)
+			{
+				need(16);
+				g.registerScrollAmount(buffer.getInt());
+				g.registerScrollType(buffer.getInt());
+				g.registerUnitsToScroll(buffer.getInt());
+				g.registerWheelRotation(buffer.getInt());
+			}
+			if ((flags & InputRecorder.MOUSE_FLAGS) != 0)
+			{
+				need(1);
+				mouseFlags = buffer.get();
+			}
+			g.mouseDragged = (mouseFlags & InputRecorder.FLAG_DRAGGED) != 0;
+			g.mouseMoved = (mouseFlags & InputRecorder.FLAG_MOVED) != 0;
+			g.mouseInWindow = (mouseFlags & InputRecorder.FLAG_IN_WINDOW) != 0;
+			if ((flags & InputRecorder.VIEWPORT) != 0)
+			{
+				need(8);
+				g.viewPortDimension.setSize(buffer.getInt(), buffer.getInt());
+			}
+		}
+		ticks++;
+		return(true);
+	}
+	
+	/**
+	 * Plays the rest of the recording back through a HeadlessRunner, as fast as possible on the calling thread
+	 *
+	 * @param runner The runner of the game being replayed into (see createRunner())
+	 * @return The number of game ticks replayed
+	 * @throws IOException If the recording could not be read
+	 */
+	public long replay(HeadlessRunner runner) throws IOException
+	{
+		long start = ticks;
+		while (applyNextTick(runner.getGame()))
+			runner.tick();
+		return(ticks - start);
+	}
+	
+	/**
+	 * Seeds the game with the recorded random seed and creates a HeadlessRunner for it (which calls the game's initStep()),
+	 * ready to replay into
+	 *
+	 * @param g The game to replay into. It should be a new instance of the game that was recorded
+	 * @return The runner
+	 */
+	public HeadlessRunner createRunner(Game g)
+	{
+		g.setRandomSeed(randomSeed);
+		return(new HeadlessRunner(g));
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns the random seed the recorded game was using when the recording started
+	 *
+	 * @return The random seed
+	 */
+	public long getRandomSeed()
+	{
+		return(randomSeed);
+	}
+	
+	/**
+	 * Returns the GFPS the recorded game was running at
+	 *
+	 * @return The game-frames-per-second
+	 */
+	public int getGFPS()
+	{
+		return(gfps);
+	}
+	
+	/**
+	 * Returns the number of game ticks replayed so far
+	 *
+	 * @return The number of game ticks
+	 */
+	public long getTicksReplayed()
+	{
+		return(ticks);
+	}
+	
+	/**
+	 * Closes the recording
+	 *
+	 * @throws IOException If the file could not be closed
+	 */
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
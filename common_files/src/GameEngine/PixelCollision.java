@@ -0,0 +1,41 @@
+package GameEngine;
+
+/**
+ * Pixel perfect collision detection, two objects collide only if a solid pixel of one lies on a solid pixel of the other. Use it as
+ * the narrowphase of a CollisionStage, or call test() directly.
+ * <p>
+ * The test compares the objects' alpha masks (see AlphaMask), 64 pixels at a time, so it is fast enough to run on every pair found by
+ * the broadphase. Like the bounding boxes the masks are not rotated or reflected, and the objects' positions are rounded down to
+ * whole pixels (as in GameObject.getIntAABoundingBox()). A texture without pixel data is solid over its whole bounding box.
+ *
+ * @see AlphaMask
+ * @see CollisionStage
+ */
+public class PixelCollision implements GameNarrowphase
+{
+	/**
+	 * Tests whether two objects touch, pixel for pixel
+	 *
+	 * @param a The first object
+	 * @param b The second object
+	 * @return True if a solid pixel of one object lies on a solid pixel of the other
+	 */
+	public boolean collides(GameObject a, GameObject b)
+	{
+		return(test(a, b));
+	}
+	
+	/**
+	 * Tests whether two objects touch, pixel for pixel
+	 *
+	 * @param a The first object
+	 * @param b The second object
+	 * @return True if a solid pixel of one object lies on a solid pixel of the other
+	 */
+	public static boolean test(GameObject a, GameObject b)
+	{
+		int ax = (int)a.getBoundsX(), ay = (int)a.getBoundsY();
+		int bx = (int)b.getBoundsX(), by = (int)b.getBoundsY();
+		return(AlphaMask.overlaps(a.getAlphaMask(), ax, ay, b.getAlphaMask(), bx, by));
+	}
+}
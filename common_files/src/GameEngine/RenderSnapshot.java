@@ -0,0 +1,349 @@
+package GameEngine;
+
+import javax.media.opengl.*;
+import java.awt.geom.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A recording of everything drawn during one renderStep, used when the game logic and rendering run on separate threads
+ * (see Game.setThreadingMode()).
+ * <p>
+ * The logic thread runs the renderStep against a recording GameDrawer, which copies the position, rotation, centre, size,
+ * texture coordinates and colour of every drawn GameObject (and every shape and string of text) into this snapshot.
+ * The GL thread then replays the latest snapshot without ever touching the GameObjects, so the logic thread is free to
+ * carry on changing them.
+ * <p>
+ * The recorded data is kept in flat arrays which are reused from snapshot to snapshot, so recording does not create garbage
+ * once the arrays have grown large enough.
+ */
+class RenderSnapshot
+{
+	static final int SPRITE = 0;
+	static final int SHAPE = 1;
+	static final int TEXT = 2;
+	static final int TILEMAP = 3;
+	
+	// Number of floats stored for a sprite: colour(4), position(2), rotation, center(2), size(2), tex coords(4), depth,
+	// previous position(2), previous rotation, interpolation span
+	static final int SPRITE_FLOATS = 20;
+	// Number of floats stored for some text: position(2), colour(4), depth, scale
+	static final int TEXT_FLOATS = 8;
+	// Number of floats stored per vertex of a shape: position(2), colour(4)
+	static final int VERTEX_FLOATS = 6;
+	// Number of floats stored for a tile map: colour(4), offset(2), depth, viewport size(2)
+	static final int TILEMAP_FLOATS = 9;
+	
+	// Per command data
+	int commands = 0;
+	int [] cmdType = new int [256];
+	int [] cmdStart = new int [256];
+	int [] cmdInt = new int [256];
+	int [] cmdCount = new int [256];
+	Object [] cmdRefA = new Object [256];
+	Object [] cmdRefB = new Object [256];
+	
+	// Float data for all the commands
+	int floatsUsed = 0;
+	float [] floats = new float [256 * SPRITE_FLOATS];
+	
+	// The colour the GL would currently be drawing in while recording
+	private float [] current = {1.0f, 1.0f, 1.0f, 1.0f};
+	
+	//==============================================================================
+	
+	/**
+	 * Clears the snapshot so it can be recorded into again
+	 */
+	void clear()
+	{
+		// Drop the references so that destroyed objects' textures and strings can be collected
+		for (int i = 0 ; i < commands ; i++)
+		{
+			cmdRefA[i] = null;
+			cmdRefB[i] = null;
+		}
+		commands = 0;
+		floatsUsed = 0;
+		setColour(1.0f, 1.0f, 1.0f, 1.0f);
+	}
+	
+	/**
+	 * Sets the colour that the following commands are drawn in (this mirrors glColor4f())
+	 */
+	void setColour(float r, float g, float b, float a)
+	{
+		current[0] = r;
+		current[1] = g;
+		current[2] = b;
+		current[3] = a;
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Starts a new command
+	 *
+	 * @return The index of the command
+	 */
+	private int addCommand(int type, int floatCount)
+	{
+		if (commands == cmdType.length)
+		{
+			int n = commands * 2;
+			cmdType = grow(cmdType, n);
+			cmdStart = grow(cmdStart, n);
+			cmdInt = grow(cmdInt, n);
+			cmdCount = grow(cmdCount, n);
+			cmdRefA = grow(cmdRefA, n);
+			cmdRefB = grow(cmdRefB, n);
+		}
+		if (floatsUsed + floatCount > floats.length)
+		{
+			float [] f = new float [Math.max(floats.length * 2, floatsUsed + floatCount)];
+			System.arraycopy(floats, 0, f, 0, floatsUsed);
+			floats = f;
+		}
+		
+		int i = commands++;
+		cmdType[i] = type;
+		cmdStart[i] = floatsUsed;
+		floatsUsed += floatCount;
+		return(i);
+	}
+	
+	private static int [] grow(int [] a, int n)
+	{
+		int [] b = new int [n];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return(b);
+	}
+	
+	private static Object [] grow(Object [] a, int n)
+	{
+		Object [] b = new Object [n];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return(b);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Records a textured quad in the current colour (the tex coords should already be reflected). The previous transform is
+	 * where the sprite was span game ticks ago, a span of 0 means the sprite is not interpolated
+	 */
+	void addSprite(GameTexture t, float x, float y, float rotation, float prevX, float prevY, float prevRotation, long span,
+			float cx, float cy, float w, float h, float tcLeft, float tcRight, float tcTop, float tcBottom, float depth)
+	{
+		int i = addCommand(SPRITE, SPRITE_FLOATS);
+		cmdRefA[i] = t;
+		
+		int f = cmdStart[i];
+		floats[f++] = current[0];
+		floats[f++] = current[1];
+		floats[f++] = current[2];
+		floats[f++] = current[3];
+		floats[f++] = x;
+		floats[f++] = y;
+		floats[f++] = rotation;
+		floats[f++] = cx;
+		floats[f++] = cy;
+		floats[f++] = w;
+		floats[f++] = h;
+		floats[f++] = tcLeft;
+		floats[f++] = tcRight;
+		floats[f++] = tcTop;
+		floats[f++] = tcBottom;
+		floats[f++] = depth;
+		floats[f++] = prevX;
+		floats[f++] = prevY;
+		floats[f++] = prevRotation;
+		floats[f] = span;
+	}
+	
+	/**
+	 * Records a shape. If c is null the current colour is used for every vertex
+	 */
+	void addShape(int type, Point2D.Float [] points, float offx, float offy, float [][] c, float depth)
+	{
+		int count = points.length;
+		int i = addCommand(SHAPE, 1 + count * VERTEX_FLOATS);
+		cmdInt[i] = type;
+		cmdCount[i] = count;
+		
+		int f = cmdStart[i];
+		floats[f++] = depth;
+		for (int v = 0 ; v < count ; v++)
+		{
+			float [] col = (c == null ? current : c[v]);
+			floats[f++] = points[v].x + offx;
+			floats[f++] = points[v].y + offy;
+			floats[f++] = col[0];
+			floats[f++] = col[1];
+			floats[f++] = col[2];
+			floats[f++] = col[3];
+		}
+	}
+	
+	/**
+	 * Records a tile map, in the current colour
+	 */
+	void addTileMap(TileMap map, float offx, float offy, float depth, boolean cull, float viewW, float viewH)
+	{
+		int i = addCommand(TILEMAP, TILEMAP_FLOATS);
+		cmdRefA[i] = map;
+		cmdInt[i] = cull ? 1 : 0;
+		
+		int f = cmdStart[i];
+		for (int c = 0 ; c < 4 ; c++)
+			floats[f++] = current[c];
+		floats[f++] = offx;
+		floats[f++] = offy;
+		floats[f++] = depth;
+		floats[f++] = viewW;
+		floats[f++] = viewH;
+	}
+	
+	/**
+	 * Records a string of text. The position is already offset
+	 */
+	void addText(GameFont gf, String text, float x, float y, float r, float g, float b, float a, float depth, float scale)
+	{
+		int i = addCommand(TEXT, TEXT_FLOATS);
+		cmdRefA[i] = gf;
+		cmdRefB[i] = text;
+		
+		int f = cmdStart[i];
+		floats[f++] = x;
+		floats[f++] = y;
+		floats[f++] = r;
+		floats[f++] = g;
+		floats[f++] = b;
+		floats[f++] = a;
+		floats[f++] = depth;
+		floats[f] = scale;
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Draws everything recorded in this snapshot. Must be called on the GL thread
+	 *
+	 * @param gl The GL context to draw with
+	 * @param fr The font renderer that the text is passed on to
+	 * @param alpha How far (between 0.0 and 1.0) the render is between the recorded game tick and the next one
+	 * @param batch The batch to draw the sprites with, or null to draw them one at a time
+	 */
+	void replay(GL gl, GameRenderer.FontRenderer fr, float alpha, SpriteBatch batch)
+	{
+		for (int i = 0 ; i < commands ; i++)
+		{
+			int f = cmdStart[i];
+			switch (cmdType[i])
+			{
+				case SPRITE:
+					float x = floats[f+4], y = floats[f+5], rotation = floats[f+6];
+					if (floats[f+19] != 0.0f)
+					{
+						float fraction = GameObject.interpolationFraction((long)floats[f+19], alpha);
+						x = floats[f+16] + (x - floats[f+16]) * fraction;
+						y = floats[f+17] + (y - floats[f+17]) * fraction;
+						rotation = GameObject.lerpAngle(floats[f+18], rotation, fraction);
+					}
+					if (batch != null)
+					{
+						batch.setColour(floats[f], floats[f+1], floats[f+2], floats[f+3]);
+						batch.add((GameTexture)cmdRefA[i], x, y, rotation, floats[f+7], floats[f+8],
+								floats[f+9], floats[f+10], floats[f+11], floats[f+12], floats[f+13], floats[f+14], floats[f+15]);
+						break;
+					}
+					gl.getGL2().glColor4f(floats[f], floats[f+1], floats[f+2], floats[f+3]);
+					GameObject.drawQuad(gl, (GameTexture)cmdRefA[i], x, y, rotation, floats[f+7], floats[f+8],
+							floats[f+9], floats[f+10], floats[f+11], floats[f+12], floats[f+13], floats[f+14], floats[f+15]);
+					break;
+				case SHAPE:
+					if (batch != null)
+						batch.flush();
+					float depth = floats[f++];
+					gl.getGL2().glBegin(cmdInt[i]);
+					for (int v = 0 ; v < cmdCount[i] ; v++, f += VERTEX_FLOATS)
+					{
+						gl.getGL2().glColor4f(floats[f+2], floats[f+3], floats[f+4], floats[f+5]);
+						gl.getGL2().glVertex3f(floats[f], floats[f+1], depth);
+					}
+					gl.getGL2().glEnd();
+					break;
+				case TILEMAP:
+					if (batch != null)
+						batch.flush();
+					gl.getGL2().glColor4f(floats[f], floats[f+1], floats[f+2], floats[f+3]);
+					((TileMap)cmdRefA[i]).draw(gl, floats[f+4], floats[f+5], floats[f+6], cmdInt[i] != 0, floats[f+7], floats[f+8]);
+					break;
+				case TEXT:
+					fr.registerFontRender((GameFont)cmdRefA[i], (String)cmdRefB[i], floats[f], floats[f+1],
+							floats[f+2], floats[f+3], floats[f+4], floats[f+5], floats[f+6], floats[f+7]);
+					break;
+			}
+		}
+	}
+	
+	//==============================================================================
+	//==============================================================================
+	
+	/**
+	 * Three snapshots shared between the logic thread (which records) and the GL thread (which replays).
+	 * <p>
+	 * The logic thread always has a snapshot of its own to record into, and the GL thread always has one of its own to draw,
+	 * so neither thread ever waits for the other. The third snapshot is the latest one published by the logic thread, which the
+	 * GL thread swaps for its own when it wants something newer.
+	 */
+	static class Exchange
+	{
+		// The index of the shared snapshot, with FRESH set if it is newer than what the GL thread is drawing
+		private static final int FRESH = 4;
+		
+		private RenderSnapshot [] snapshots = {new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot()};
+		private AtomicInteger shared = new AtomicInteger(1);
+		private int back = 0;	// Owned by the logic thread
+		private int front = 2;	// Owned by the GL thread
+		private volatile boolean published = false;
+		
+		/**
+		 * Returns the snapshot the logic thread should record into (cleared)
+		 */
+		RenderSnapshot beginRecord()
+		{
+			RenderSnapshot s = snapshots[back];
+			s.clear();
+			return(s);
+		}
+		
+		/**
+		 * Publishes the snapshot that was just recorded, making it the latest one for the GL thread
+		 */
+		void publish()
+		{
+			back = shared.getAndSet(back | FRESH) & ~FRESH;
+			published = true;
+		}
+		
+		/**
+		 * Returns whether a snapshot has been published that the GL thread has not yet picked up
+		 */
+		boolean hasFresh()
+		{
+			return((shared.get() & FRESH) != 0);
+		}
+		
+		/**
+		 * Returns the latest published snapshot for the GL thread to draw. This stays valid until the next call
+		 *
+		 * @return The latest snapshot, or null if nothing has been published yet
+		 */
+		RenderSnapshot acquireLatest()
+		{
+			if (hasFresh())
+				front = shared.getAndSet(front) & ~FRESH;
+			return(published ? snapshots[front] : null);
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package GameEngine;
+
+/**
+ * A broadphase for collision detection that only compares objects that are near each other, instead of every object against every
+ * other object. The world is divided into square cells and each collidable object is put into the cells its bounding box covers,
+ * so the cost grows roughly with the number of objects rather than with its square.
+ * <p>
+ * The hash is rebuilt every game tick: call build() (or clear() and insert()) once the objects have moved, then findPairs() to be
+ * given every pair of collidable objects whose bounding boxes overlap or touch. Each pair is given once, with the object that was
+ * inserted first as the first object, and the pairs always come in the same order for the same objects (so games stay repeatable).
+ * Objects that are not collidable (see GameObject.setCollidable()) are left out, as are pairs where either object stops being
+ * collidable during findPairs() and pairs whose collision filters do not match (see GameObject.setCollisionFilter()).
+ * <p>
+ * The cell size should be about the size of the common objects in the game. Much larger cells put many objects in each cell and
+ * much smaller cells put each object in many cells. Any size works, only the speed is affected.
+ * <p>
+ * Once it has grown to fit the game the hash creates no garbage.
+ * <p>
+ * E.g:<p>
+ * <code> SpatialHash broadphase = new SpatialHash(64);</code><p>
+ * <code> ...</code><p>
+ * <code> broadphase.build(objects);</code><p>
+ * <code> broadphase.findPairs(collisionListener);</code><p>
+ *
+ * @see GameCollisionListener
+ * @see GameWorld
+ */
+public class SpatialHash implements GameBroadphase
+{
+	private float cellSize;
+	private float invCellSize;
+	
+	// The inserted objects and their bounding boxes
+	private GameObject [] objects = new GameObject [256];
+	private float [] minX = new float [256];
+	private float [] minY = new float [256];
+	private float [] maxX = new float [256];
+	private float [] maxY = new float [256];
+	private int count = 0;
+	
+	// The objects in each cell, as linked lists of entries
+	private int [] entryObject = new int [1024];
+	private int [] entryNext = new int [1024];
+	private int entryCount = 0;
+	
+	// The cells, an open addressing hash table from cell coordinates to the first entry in the cell
+	private long [] cellKeys = new long [1024];
+	private int [] cellHeads = new int [1024];
+	private int [] usedCells = new int [512];
+	private int usedCount = 0;
+	
+	//==============================================================================
+	
+	/**
+	 * Constructor
+	 *
+	 * @param cellSize The width and height of a cell, in pixels
+	 */
+	public SpatialHash(float cellSize)
+	{
+		if (!(cellSize > 0.0f))
+			throw new IllegalArgumentException("The cell size must be greater than 0");
+		
+		this.cellSize = cellSize;
+		invCellSize = 1.0f / cellSize;
+		java.util.Arrays.fill(cellHeads, -1);
+	}
+	
+	/**
+	 * Returns the cell size
+	 *
+	 * @return The width and height of a cell, in pixels
+	 */
+	public float getCellSize()
+	{
+		return(cellSize);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Removes every object from the hash
+	 */
+	public void clear()
+	{
+		for (int i = 0 ; i < usedCount ; i++)
+			cellHeads[usedCells[i]] = -1;
+		for (int i = 0 ; i < count ; i++)
+			objects[i] = null;
+		usedCount = 0;
+		entryCount = 0;
+		count = 0;
+	}
+	
+	/**
+	 * Clears the hash and inserts every collidable object in the world
+	 *
+	 * @param world The objects
+	 */
+	public void build(GameWorld world)
+	{
+		clear();
+		for (int i = 0 ; i < world.size() ; i++)
+			insert(world.get(i));
+	}
+	
+	/**
+	 * Inserts an object at its current position (covering the whole of its motion this tick if it is a fast object, see
+	 * GameObject.setContinuousCollision()). Objects that are not collidable are ignored
+	 *
+	 * @param o The object
+	 */
+	public void insert(GameObject o)
+	{
+		if (!o.getCollidable())
+			return;
+		
+		if (count == objects.length)
+			growObjects();
+		
+		int index = count++;
+		objects[index] = o;
+		minX[index] = o.getSweptMinX();
+		minY[index] = o.getSweptMinY();
+		maxX[index] = o.getSweptMaxX();
+		maxY[index] = o.getSweptMaxY();
+		
+		int cx1 = cell(maxX[index]), cy1 = cell(maxY[index]);
+		for (int cx = cell(minX[index]) ; cx <= cx1 ; cx++)
+			for (int cy = cell(minY[index]) ; cy <= cy1 ; cy++)
+				addEntry(cx, cy, index);
+	}
+	
+	/**
+	 * Returns the number of objects in the hash
+	 *
+	 * @return The number of objects
+	 */
+	public int size()
+	{
+		return(count);
+	}
+	
+	/**
+	 * Returns the number of cells that have objects in them
+	 *
+	 * @return The number of cells used
+	 */
+	public int getCellCount()
+	{
+		return(usedCount);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Finds every pair of objects in the hash whose bounding boxes overlap or touch
+	 *
+	 * @param listener Given each pair
+	 * @return The number of pairs found
+	 */
+	public int findPairs(GameCollisionListener listener)
+	{
+		int pairs = 0;
+		for (int c = 0 ; c < usedCount ; c++)
+		{
+			int slot = usedCells[c];
+			int cx = (int)(cellKeys[slot] >> 32);
+			int cy = (int)cellKeys[slot];
+			
+			for (int e1 = cellHeads[slot] ; e1 != -1 ; e1 = entryNext[e1])
+			{
+				for (int e2 = entryNext[e1] ; e2 != -1 ; e2 = entryNext[e2])
+				{
+					// The entries are in reverse order of insertion
+					int i = entryObject[e2], j = entryObject[e1];
+					if (!objects[i].canCollideWith(objects[j]))
+						continue;
+					if (minX[i] > maxX[j] || minX[j] > maxX[i] || minY[i] > maxY[j] || minY[j] > maxY[i])
+						continue;
+					
+					// A pair sharing several cells is only reported in the cell holding the corner of their overlap
+					if (cell(Math.max(minX[i], minX[j])) != cx || cell(Math.max(minY[i], minY[j])) != cy)
+						continue;
+					
+					if (!objects[i].getCollidable() || !objects[j].getCollidable())
+						continue;
+					
+					listener.collision(objects[i], objects[j]);
+					pairs++;
+				}
+			}
+		}
+		return(pairs);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns the cell coordinate of a position
+	 */
+	private int cell(float v)
+	{
+		return((int)Math.floor(v * invCellSize));
+	}
+	
+	/**
+	 * Adds an object to the list of a cell, creating the cell if need be
+	 */
+	private void addEntry(int cx, int cy, int index)
+	{
+		if (entryCount == entryObject.length)
+		{
+			entryObject = grow(entryObject, entryCount * 2);
+			entryNext = grow(entryNext, entryCount * 2);
+		}
+		
+		int slot = findSlot(((long)cx << 32) | (cy & 0xffffffffL));
+		entryObject[entryCount] = index;
+		entryNext[entryCount] = cellHeads[slot];
+		cellHeads[slot] = entryCount++;
+	}
+	
+	/**
+	 * Returns the hash table slot of a cell, claiming a free slot for it if it is not in the table yet
+	 */
+	private int findSlot(long key)
+	{
+		int mask = cellKeys.length - 1;
+		int slot = hash(key) & mask;
+		while (cellHeads[slot] != -1)
+		{
+			if (cellKeys[slot] == key)
+				return(slot);
+			slot = (slot + 1) & mask;
+		}
+		
+		// A new cell, keep the table at most half full
+		if ((usedCount + 1) * 2 > cellKeys.length)
+		{
+			rehash();
+			return(findSlot(key));
+		}
+		
+		cellKeys[slot] = key;
+		if (usedCount == usedCells.length)
+			usedCells = grow(usedCells, usedCount * 2);
+		usedCells[usedCount++] = slot;
+		return(slot);
+	}
+	
+	private static int hash(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return((int)(h ^ (h >>> 32)));
+	}
+	
+	/**
+	 * Doubles the size of the hash table, keeping the cells in the order they were first used
+	 */
+	private void rehash()
+	{
+		long [] oldKeys = cellKeys;
+		int [] oldHeads = cellHeads;
+		cellKeys = new long [oldKeys.length * 2];
+		cellHeads = new int [oldHeads.length * 2];
+		java.util.Arrays.fill(cellHeads, -1);
+		
+		int mask = cellKeys.length - 1;
+		for (int i = 0 ; i < usedCount ; i++)
+		{
+			int old = usedCells[i];
+			int slot = hash(oldKeys[old]) & mask;
+			while (cellHeads[slot] != -1)
+				slot = (slot + 1) & mask;
+			cellKeys[slot] = oldKeys[old];
+			cellHeads[slot] = oldHeads[old];
+			usedCells[i] = slot;
+		}
+	}
+	
+	private void growObjects()
+	{
+		int n = count * 2;
+		GameObject [] o = new GameObject [n];
+		System.arraycopy(objects, 0, o, 0, count);
+		objects = o;
+		minX = grow(minX, n);
+		minY = grow(minY, n);
+		maxX = grow(maxX, n);
+		maxY = grow(maxY, n);
+	}
+	
+	private static int [] grow(int [] a, int n)
+	{
+		int [] b = new int [n];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return(b);
+	}
+	
+	private static float [] grow(float [] a, int n)
+	{
+		float [] b = new float [n];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return(b);
+	}
+}
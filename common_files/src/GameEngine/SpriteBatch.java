@@ -0,0 +1,305 @@
+package GameEngine;
+
+import javax.media.opengl.*;
+import com.jogamp.opengl.util.texture.*;
+import java.nio.*;
+
+/**
+ * Draws GameObjects in batches instead of one at a time (see Game.setSpriteBatching()).
+ * <p>
+ * Drawing a sprite on its own takes a matrix push, two translations and a rotation, enabling and binding its texture, an immediate
+ * mode quad and then undoing it all again. The batch instead works out the four corners of each sprite itself and queues them,
+ * with their texture coordinates and colour, in a vertex array. The queue is drawn when it is full or when something else is
+ * about to be drawn (a shape, or the text at the end of the frame), with one glDrawArrays() call per texture, so thousands of
+ * sprites sharing a texture cost a handful of GL calls. Textures packed into the same atlas page (see ResourceLoader.loadTextures())
+ * share a GL texture, so they do not break the batch.
+ * <p>
+ * If sorting is enabled (see Game.setSpriteSorting()) the queue is sorted on a 64 bit key per sprite before it is drawn. Opaque
+ * sprites (a texture without see-through pixels, drawn in an opaque colour) come first, grouped by texture, the depth test puts
+ * sprites at different depths in front of or behind each other whatever order they are drawn in. Translucent sprites follow, from
+ * the back to the front (lowest depth first) so they blend over what is behind them, and grouped by texture where they share a
+ * depth. Sprites with the same key stay in the order they were given, but overlapping sprites at the same depth with different
+ * textures may swap, as the depth test then lets the last one drawn win.
+ * <p>
+ * The keys are sorted with a radix sort, a byte at a time, skipping the bytes that are the same for every sprite. Everything is
+ * allocated up front, so drawing creates no garbage.
+ */
+class SpriteBatch
+{
+	// Per vertex: position(3), texture coordinates(2), colour(4)
+	static final int VERTEX_FLOATS = 9;
+	static final int MAX_SPRITES = 2048;
+	
+	private static final int SPRITE_FLOATS = 4 * VERTEX_FLOATS;
+	private static final long TRANSLUCENT = 1L << 63;
+	private static final int MAX_TEXTURE_IDS = 1 << 20;
+	
+	private float [] vertices = new float [MAX_SPRITES * SPRITE_FLOATS];
+	private FloatBuffer buffer = ByteBuffer.allocateDirect(MAX_SPRITES * SPRITE_FLOATS * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+	private int sprites = 0;
+	
+	// The GL texture and sort key of each queued sprite. Headless textures have no GL texture
+	private Texture [] spriteTextures = new Texture [MAX_SPRITES];
+	private long [] keys = new long [MAX_SPRITES];
+	
+	// The order to draw the sprites in, and space for the radix sort
+	private int [] order = new int [MAX_SPRITES];
+	private int [] orderTemp = new int [MAX_SPRITES];
+	private long [] keysTemp = new long [MAX_SPRITES];
+	private int [] counts = new int [256];
+	
+	// The textures seen this frame, a texture's id is its index. Looked up from the last one used
+	private Texture [] textures = new Texture [64];
+	private int textureCount = 0;
+	private int lastTextureId = -1;
+	
+	boolean sorting = false;
+	
+	private GL2 gl;
+	
+	// The colour sprites are drawn in, and whether the GL has been told about it
+	private float r = 1.0f, g = 1.0f, b = 1.0f, a = 1.0f;
+	private boolean colourDirty = true;
+	
+	// For the last frame
+	int drawCalls = 0;
+	int spritesDrawn = 0;
+	
+	//==============================================================================
+	
+	/**
+	 * Starts a frame
+	 *
+	 * @param g The GL context to draw with
+	 */
+	void begin(GL g)
+	{
+		gl = g.getGL2();
+		drawCalls = 0;
+		spritesDrawn = 0;
+		colourDirty = true;
+	}
+	
+	/**
+	 * Draws whatever is left at the end of a frame
+	 */
+	void end()
+	{
+		flush();
+		for (int i = 0 ; i < textureCount ; i++)
+			textures[i] = null;
+		textureCount = 0;
+		lastTextureId = -1;
+	}
+	
+	/**
+	 * Sets the colour the following sprites are drawn in. The GL's own colour is only changed once the batch is flushed
+	 */
+	void setColour(float r, float g, float b, float a)
+	{
+		this.r = r;
+		this.g = g;
+		this.b = b;
+		this.a = a;
+		colourDirty = true;
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Adds a sprite to the batch. Takes the same values as GameObject.drawQuad()
+	 */
+	void add(GameTexture t, float x, float y, float rotation, float cx, float cy, float w, float h,
+			float tc_lft, float tc_rgt, float tc_top, float tc_bot, float depth)
+	{
+		if (sprites == MAX_SPRITES)
+			flush();
+		
+		float cos = 1.0f, sin = 0.0f;
+		if (rotation != 0.0f)
+		{
+			double radians = Math.toRadians(rotation);
+			cos = (float)Math.cos(radians);
+			sin = (float)Math.sin(radians);
+		}
+		
+		// The corners relative to the center, rotated and then moved to the position
+		float x0 = -cx, y0 = -cy, x1 = w - cx, y1 = h - cy;
+		int v = sprites * SPRITE_FLOATS;
+		v = vertex(v, x + x0 * cos - y0 * sin, y + x0 * sin + y0 * cos, depth, tc_lft, tc_bot);
+		v = vertex(v, x + x1 * cos - y0 * sin, y + x1 * sin + y0 * cos, depth, tc_rgt, tc_bot);
+		v = vertex(v, x + x1 * cos - y1 * sin, y + x1 * sin + y1 * cos, depth, tc_rgt, tc_top);
+		vertex(v, x + x0 * cos - y1 * sin, y + x0 * sin + y1 * cos, depth, tc_lft, tc_top);
+		
+		spriteTextures[sprites] = t.t;
+		keys[sprites] = sortKey(textureId(t.t), t.opaque && a >= 1.0f, depth);
+		sprites++;
+	}
+	
+	/**
+	 * Packs the sort key of a sprite. Opaque sprites: the texture id above the depth. Translucent sprites: the translucent bit, the
+	 * depth and then the texture id
+	 */
+	static long sortKey(int textureId, boolean opaque, float depth)
+	{
+		// Flipping the bits of a float this way makes its bits sort as unsigned integers in the same order as the floats
+		int bits = Float.floatToIntBits(depth == 0.0f ? 0.0f : depth);
+		bits = bits < 0 ? ~bits : bits ^ 0x80000000;
+		long depthBits = bits & 0xFFFFFFFFL;
+		
+		if (opaque)
+			return(((long)textureId << 32) | depthBits);
+		return(TRANSLUCENT | (depthBits << 20) | textureId);
+	}
+	
+	/**
+	 * Returns the id of a GL texture, the order it was first seen in this frame
+	 */
+	private int textureId(Texture t)
+	{
+		if (lastTextureId >= 0 && textures[lastTextureId] == t)
+			return(lastTextureId);
+		
+		for (int i = 0 ; i < textureCount ; i++)
+			if (textures[i] == t)
+				return(lastTextureId = i);
+		
+		if (textureCount == textures.length)
+		{
+			// Running out of ids only costs sorting, the sprites are still drawn correctly
+			if (textures.length == MAX_TEXTURE_IDS)
+				return(MAX_TEXTURE_IDS - 1);
+			Texture [] grown = new Texture [textures.length * 2];
+			System.arraycopy(textures, 0, grown, 0, textureCount);
+			textures = grown;
+		}
+		textures[textureCount] = t;
+		return(lastTextureId = textureCount++);
+	}
+	
+	private int vertex(int v, float x, float y, float z, float u, float t)
+	{
+		vertices[v++] = x;
+		vertices[v++] = y;
+		vertices[v++] = z;
+		vertices[v++] = u;
+		vertices[v++] = t;
+		vertices[v++] = r;
+		vertices[v++] = g;
+		vertices[v++] = b;
+		vertices[v++] = a;
+		return(v);
+	}
+	
+	/**
+	 * Sorts the sprites in the batch, draws them and brings the GL's colour up to date. Called before anything else is drawn
+	 */
+	void flush()
+	{
+		if (sprites > 0)
+		{
+			for (int i = 0 ; i < sprites ; i++)
+				order[i] = i;
+			if (sorting)
+				radixSort();
+			
+			buffer.clear();
+			for (int i = 0 ; i < sprites ; i++)
+				buffer.put(vertices, order[i] * SPRITE_FLOATS, SPRITE_FLOATS);
+			
+			int stride = VERTEX_FLOATS * 4;
+			buffer.position(0);
+			gl.glVertexPointer(3, GL.GL_FLOAT, stride, buffer);
+			buffer.position(3);
+			gl.glTexCoordPointer(2, GL.GL_FLOAT, stride, buffer);
+			buffer.position(5);
+			gl.glColorPointer(4, GL.GL_FLOAT, stride, buffer);
+			gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+			gl.glEnableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
+			gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
+			
+			// One draw per run of sprites sharing a texture
+			int first = 0;
+			while (first < sprites)
+			{
+				Texture texture = spriteTextures[order[first]];
+				int last = first + 1;
+				while (last < sprites && spriteTextures[order[last]] == texture)
+					last++;
+				
+				// Headless textures have no GL texture
+				if (texture != null)
+				{
+					texture.enable(gl);
+					texture.bind(gl);
+				}
+				gl.glDrawArrays(GL2.GL_QUADS, first * 4, (last - first) * 4);
+				if (texture != null)
+					texture.disable(gl);
+				
+				drawCalls++;
+				first = last;
+			}
+			
+			gl.glDisableClientState(GL2.GL_COLOR_ARRAY);
+			gl.glDisableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
+			gl.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+			
+			for (int i = 0 ; i < sprites ; i++)
+				spriteTextures[i] = null;
+			spritesDrawn += sprites;
+			sprites = 0;
+			
+			// The colour array leaves the GL's colour undefined
+			colourDirty = true;
+		}
+		
+		if (colourDirty)
+		{
+			gl.glColor4f(r, g, b, a);
+			colourDirty = false;
+		}
+	}
+	
+	/**
+	 * Sorts the order of the sprites by their keys, least significant byte first. Each pass keeps the order of the last one
+	 * for equal bytes, so sprites with equal keys stay in the order they were given
+	 */
+	private void radixSort()
+	{
+		// Bytes that are the same in every key do not change the order
+		long first = keys[0], differ = 0;
+		for (int i = 1 ; i < sprites ; i++)
+			differ |= keys[i] ^ first;
+		
+		for (int shift = 0 ; shift < 64 ; shift += 8)
+		{
+			if (((differ >>> shift) & 0xFF) == 0)
+				continue;
+			
+			for (int i = 0 ; i < 256 ; i++)
+				counts[i] = 0;
+			for (int i = 0 ; i < sprites ; i++)
+				counts[(int)(keys[i] >>> shift) & 0xFF]++;
+			for (int i = 0, sum = 0 ; i < 256 ; i++)
+			{
+				int c = counts[i];
+				counts[i] = sum;
+				sum += c;
+			}
+			for (int i = 0 ; i < sprites ; i++)
+			{
+				int to = counts[(int)(keys[i] >>> shift) & 0xFF]++;
+				keysTemp[to] = keys[i];
+				orderTemp[to] = order[i];
+			}
+			
+			long [] k = keys;
+			keys = keysTemp;
+			keysTemp = k;
+			int [] o = order;
+			order = orderTemp;
+			orderTemp = o;
+		}
+	}
+}
@@ -0,0 +1,544 @@
+package GameEngine;
+
+import javax.media.opengl.*;
+import com.jogamp.opengl.util.texture.*;
+import java.nio.*;
+import java.util.Arrays;
+
+/**
+ * A grid of tiles for the static parts of a world, such as the floor. Draw it with GameDrawer.draw(TileMap, float).
+ * <p>
+ * Each tile is only an id (a short), the textures are set once per id with setTileTexture(). A map of 1000x1000 tiles takes 2MB,
+ * rather than a million GameObjects. The map is split into square chunks of tiles. The first time a chunk is drawn the quads of its
+ * tiles are built and uploaded to a vertex buffer object, after that drawing the chunk costs a few GL calls whatever the number
+ * of tiles in it. A chunk is only built again once one of its tiles has changed. Only the chunks inside the viewport are drawn
+ * (see Game.setViewportCulling()), so drawing a large map costs as much as the part of it on screen.
+ * <p>
+ * Tiles whose textures share a GL texture (e.g. tiles loaded with ResourceLoader.loadTextures(), or frames of one tile sheet) are
+ * drawn together, so use as few GL textures as possible.
+ * <p>
+ * Column 0 is the left edge of the map and row 0 its bottom edge, the bottom left corner of the map is at its position. Tiles may be
+ * changed in the logicStep while the map is drawn on a separate render thread (see Game.setThreadingMode()).
+ */
+public class TileMap
+{
+	/**
+	 * The id of a tile that is not drawn
+	 */
+	public static final int EMPTY = -1;
+	
+	// Per vertex: position(2), texture coordinates(2)
+	private static final int VERTEX_FLOATS = 4;
+	
+	private final int columns, rows;
+	private final int tileW, tileH;
+	private final int chunkSize;
+	private final int chunkCols, chunkRows;
+	private float x = 0.0f, y = 0.0f;
+	
+	private final short [] tiles;
+	
+	// The texture of each tile id
+	private GameTexture [] tileTextures = new GameTexture [16];
+	private TextureCoords [] tileCoords = new TextureCoords [16];
+	
+	// Chunks that need building before they are drawn
+	private final boolean [] chunkDirty;
+	
+	// The built chunks: their vertex buffer and a run of quads per GL texture
+	private final int [] chunkBuffer;
+	private final Texture [][] runTexture;
+	private final int [][] runFirst;
+	private final int [][] runCount;
+	
+	// Space to build a chunk in, reused for every chunk
+	private FloatBuffer vertices;
+	private int [] group;
+	private int [] bufferId = new int [1];
+	
+	// For the last draw
+	private int chunksDrawn = 0;
+	private int chunksBuilt = 0;
+	
+	//==============================================================================
+	
+	/**
+	 * Constructor, makes a map of empty tiles in chunks of 32x32 tiles
+	 *
+	 * @param columns The number of tiles across
+	 * @param rows The number of tiles up
+	 * @param tileW The width of a tile in pixels
+	 * @param tileH The height of a tile in pixels
+	 */
+	public TileMap(int columns, int rows, int tileW, int tileH)
+	{
+		this(columns, rows, tileW, tileH, 32);
+	}
+	
+	/**
+	 * Constructor, makes a map of empty tiles
+	 *
+	 * @param columns The number of tiles across
+	 * @param rows The number of tiles up
+	 * @param tileW The width of a tile in pixels
+	 * @param tileH The height of a tile in pixels
+	 * @param chunkSize The number of tiles across and up a chunk. Larger chunks mean fewer draw calls but more tiles drawn off screen
+	 * 		and more work when a tile changes
+	 */
+	public TileMap(int columns, int rows, int tileW, int tileH, int chunkSize)
+	{
+		this.columns = columns;
+		this.rows = rows;
+		this.tileW = tileW;
+		this.tileH = tileH;
+		this.chunkSize = chunkSize;
+		chunkCols = (columns + chunkSize - 1) / chunkSize;
+		chunkRows = (rows + chunkSize - 1) / chunkSize;
+		
+		tiles = new short [columns * rows];
+		Arrays.fill(tiles, (short)EMPTY);
+		
+		int chunks = chunkCols * chunkRows;
+		chunkDirty = new boolean [chunks];
+		Arrays.fill(chunkDirty, true);
+		chunkBuffer = new int [chunks];
+		runTexture = new Texture [chunks][];
+		runFirst = new int [chunks][];
+		runCount = new int [chunks][];
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Sets the texture drawn for a tile id
+	 *
+	 * @param id The tile id, from 0 to 32767
+	 * @param t The texture, stretched over the tile
+	 */
+	public void setTileTexture(int id, GameTexture t)
+	{
+		setTileTexture(id, t, t.getImageTexCoords());
+	}
+	
+	/**
+	 * Sets the texture drawn for a tile id to one frame of a tile sheet, a texture holding a grid of tile sized frames
+	 *
+	 * @param id The tile id, from 0 to 32767
+	 * @param sheet The tile sheet
+	 * @param col The column of the frame, from the left
+	 * @param row The row of the frame, from the top (as with GameObject.addSpriteSheet())
+	 */
+	public void setTileTexture(int id, GameTexture sheet, int col, int row)
+	{
+		int fx = col * tileW, fy = sheet.getHeight() - (row + 1) * tileH;
+		setTileTexture(id, sheet, sheet.getSubImageTexCoords(fx, fy, fx + tileW, fy + tileH));
+	}
+	
+	private synchronized void setTileTexture(int id, GameTexture t, TextureCoords tc)
+	{
+		checkId(id, false);
+		
+		if (id >= tileTextures.length)
+		{
+			int n = Math.max(id + 1, tileTextures.length * 2);
+			tileTextures = Arrays.copyOf(tileTextures, n);
+			tileCoords = Arrays.copyOf(tileCoords, n);
+		}
+		tileTextures[id] = t;
+		tileCoords[id] = tc;
+		
+		// Any chunk may use the id
+		Arrays.fill(chunkDirty, true);
+	}
+	
+	/**
+	 * Sets the id of a tile
+	 *
+	 * @param col The column of the tile
+	 * @param row The row of the tile
+	 * @param id The tile id (from 0 to 32767), or EMPTY for no tile
+	 */
+	public synchronized void setTile(int col, int row, int id)
+	{
+		checkTile(col, row);
+		checkId(id, true);
+		
+		int i = row * columns + col;
+		if (tiles[i] == id)
+			return;
+		
+		tiles[i] = (short)id;
+		chunkDirty[(row / chunkSize) * chunkCols + col / chunkSize] = true;
+	}
+	
+	/**
+	 * Sets every tile to the same id
+	 *
+	 * @param id The tile id (from 0 to 32767), or EMPTY for no tile
+	 */
+	public synchronized void fill(int id)
+	{
+		checkId(id, true);
+		
+		Arrays.fill(tiles, (short)id);
+		Arrays.fill(chunkDirty, true);
+	}
+	
+	/**
+	 * Throws an IllegalArgumentException if the id does not fit in a tile
+	 */
+	private static void checkId(int id, boolean allowEmpty)
+	{
+		if ((id < 0 || id > Short.MAX_VALUE) && !(allowEmpty && id == EMPTY))
+			throw new IllegalArgumentException("Tile ids must be between 0 and " + Short.MAX_VALUE + (allowEmpty ? " (or EMPTY)" : ""));
+	}
+	
+	/**
+	 * Throws an IndexOutOfBoundsException if the tile is off the map
+	 */
+	private void checkTile(int col, int row)
+	{
+		if (col < 0 || row < 0 || col >= columns || row >= rows)
+			throw new IndexOutOfBoundsException("Tile (" + col + ", " + row + ") is outside the " + columns + "x" + rows + " map");
+	}
+	
+	/**
+	 * Gets the id of a tile
+	 *
+	 * @param col The column of the tile
+	 * @param row The row of the tile
+	 * @return The tile id, or EMPTY for no tile
+	 */
+	public int getTile(int col, int row)
+	{
+		checkTile(col, row);
+		return(tiles[row * columns + col]);
+	}
+	
+	/**
+	 * Gets the id of the tile at a point in the world
+	 *
+	 * @param worldX The x-coordinate of the point
+	 * @param worldY The y-coordinate of the point
+	 * @return The tile id, or EMPTY if there is no tile there or the point is off the map
+	 */
+	public int getTileAt(float worldX, float worldY)
+	{
+		int col = (int)Math.floor((worldX - x) / tileW), row = (int)Math.floor((worldY - y) / tileH);
+		if (col < 0 || row < 0 || col >= columns || row >= rows)
+			return(EMPTY);
+		return(tiles[row * columns + col]);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Moves the map in the world, the map is drawn with its bottom left corner at this position
+	 *
+	 * @param x The x-coordinate of the bottom left corner
+	 * @param y The y-coordinate of the bottom left corner
+	 */
+	public void setPosition(float x, float y)
+	{
+		this.x = x;
+		this.y = y;
+	}
+	
+	/**
+	 * Gets the x-coordinate of the map's bottom left corner
+	 *
+	 * @return The x-coordinate of the map
+	 */
+	public float getX()
+	{
+		return(x);
+	}
+	
+	/**
+	 * Gets the y-coordinate of the map's bottom left corner
+	 *
+	 * @return The y-coordinate of the map
+	 */
+	public float getY()
+	{
+		return(y);
+	}
+	
+	/**
+	 * Gets the number of tiles across the map
+	 *
+	 * @return The number of columns
+	 */
+	public int getColumns()
+	{
+		return(columns);
+	}
+	
+	/**
+	 * Gets the number of tiles up the map
+	 *
+	 * @return The number of rows
+	 */
+	public int getRows()
+	{
+		return(rows);
+	}
+	
+	/**
+	 * Gets the width of a tile
+	 *
+	 * @return The width in pixels
+	 */
+	public int getTileWidth()
+	{
+		return(tileW);
+	}
+	
+	/**
+	 * Gets the height of a tile
+	 *
+	 * @return The height in pixels
+	 */
+	public int getTileHeight()
+	{
+		return(tileH);
+	}
+	
+	/**
+	 * Gets the width of the whole map
+	 *
+	 * @return The width in pixels
+	 */
+	public float getWidth()
+	{
+		return((float)columns * tileW);
+	}
+	
+	/**
+	 * Gets the height of the whole map
+	 *
+	 * @return The height in pixels
+	 */
+	public float getHeight()
+	{
+		return((float)rows * tileH);
+	}
+	
+	/**
+	 * Returns how many chunks were drawn the last time the map was drawn
+	 *
+	 * @return The number of chunks drawn
+	 */
+	public int getChunksDrawn()
+	{
+		return(chunksDrawn);
+	}
+	
+	/**
+	 * Returns how many chunks had to be built (or built again) the last time the map was drawn
+	 *
+	 * @return The number of chunks built
+	 */
+	public int getChunksBuilt()
+	{
+		return(chunksBuilt);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Frees the vertex buffers of the built chunks, call this when the map is no longer used or before its GL context is destroyed.
+	 * Must be called on the GL thread. If the map is drawn again its chunks are built again
+	 *
+	 * @param gl The GL context the map was drawn with
+	 */
+	public synchronized void dispose(GL gl)
+	{
+		for (int i = 0 ; i < chunkBuffer.length ; i++)
+		{
+			if (chunkBuffer[i] == 0)
+				continue;
+			
+			bufferId[0] = chunkBuffer[i];
+			gl.glDeleteBuffers(1, bufferId, 0);
+			chunkBuffer[i] = 0;
+		}
+		Arrays.fill(chunkDirty, true);
+	}
+	
+	/**
+	 * Draws the chunks of the map inside the viewport, in the GL's current colour. Must be called on the GL thread
+	 *
+	 * @param gl The GL context to draw with
+	 * @param offx The world offset
+	 * @param offy The world offset
+	 * @param depth The depth to draw the tiles at
+	 * @param cull Whether to skip the chunks outside the viewport
+	 * @param viewW The width of the viewport
+	 * @param viewH The height of the viewport
+	 */
+	synchronized void draw(GL gl, float offx, float offy, float depth, boolean cull, float viewW, float viewH)
+	{
+		chunksDrawn = 0;
+		chunksBuilt = 0;
+		
+		// The range of chunks in the viewport
+		float left = x + offx, bottom = y + offy;
+		float chunkW = (float)chunkSize * tileW, chunkH = (float)chunkSize * tileH;
+		int c0 = 0, r0 = 0, c1 = chunkCols - 1, r1 = chunkRows - 1;
+		if (cull)
+		{
+			c0 = Math.max(c0, (int)Math.floor(-left / chunkW));
+			r0 = Math.max(r0, (int)Math.floor(-bottom / chunkH));
+			c1 = Math.min(c1, (int)Math.ceil((viewW - left) / chunkW) - 1);
+			r1 = Math.min(r1, (int)Math.ceil((viewH - bottom) / chunkH) - 1);
+		}
+		if (c0 > c1 || r0 > r1)
+			return;
+		
+		GL2 gl2 = gl.getGL2();
+		gl2.glPushMatrix();
+		gl2.glTranslatef(left, bottom, depth);
+		gl2.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+		gl2.glEnableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
+		
+		int stride = VERTEX_FLOATS * 4;
+		for (int row = r0 ; row <= r1 ; row++)
+		{
+			for (int col = c0 ; col <= c1 ; col++)
+			{
+				int chunk = row * chunkCols + col;
+				if (chunkDirty[chunk])
+					build(gl, chunk, col, row);
+				if (runTexture[chunk].length == 0)
+					continue;
+				
+				gl.glBindBuffer(GL.GL_ARRAY_BUFFER, chunkBuffer[chunk]);
+				gl2.glVertexPointer(2, GL.GL_FLOAT, stride, 0);
+				gl2.glTexCoordPointer(2, GL.GL_FLOAT, stride, 2 * 4);
+				for (int run = 0 ; run < runTexture[chunk].length ; run++)
+				{
+					// Headless textures have no GL texture
+					Texture t = runTexture[chunk][run];
+					if (t != null)
+					{
+						t.enable(gl);
+						t.bind(gl);
+					}
+					gl.glDrawArrays(GL2.GL_QUADS, runFirst[chunk][run], runCount[chunk][run]);
+					if (t != null)
+						t.disable(gl);
+				}
+				chunksDrawn++;
+			}
+		}
+		
+		// The sprite batch and the shapes use client side arrays, which need the buffer unbound
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+		gl2.glDisableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
+		gl2.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+		gl2.glPopMatrix();
+	}
+	
+	/**
+	 * Builds the quads of a chunk's tiles, grouped by GL texture, and uploads them to the chunk's vertex buffer
+	 */
+	private void build(GL gl, int chunk, int chunkCol, int chunkRow)
+	{
+		chunkDirty[chunk] = false;
+		chunksBuilt++;
+		
+		int col0 = chunkCol * chunkSize, row0 = chunkRow * chunkSize;
+		int col1 = Math.min(columns, col0 + chunkSize), row1 = Math.min(rows, row0 + chunkSize);
+		if (group == null)
+		{
+			group = new int [chunkSize * chunkSize];
+			vertices = ByteBuffer.allocateDirect(chunkSize * chunkSize * 4 * VERTEX_FLOATS * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		}
+		
+		// Which run each tile goes in, one run per GL texture
+		Texture [] textures = new Texture [4];
+		int [] counts = new int [4];
+		int runs = 0, quads = 0;
+		for (int row = row0, i = 0 ; row < row1 ; row++)
+		{
+			for (int col = col0 ; col < col1 ; col++, i++)
+			{
+				int id = tiles[row * columns + col];
+				group[i] = -1;
+				if (id == EMPTY || id >= tileTextures.length || tileTextures[id] == null)
+					continue;
+				
+				Texture t = tileTextures[id].t;
+				int run = 0;
+				while (run < runs && textures[run] != t)
+					run++;
+				if (run == runs)
+				{
+					if (runs == textures.length)
+					{
+						textures = Arrays.copyOf(textures, runs * 2);
+						counts = Arrays.copyOf(counts, runs * 2);
+					}
+					textures[runs++] = t;
+				}
+				group[i] = run;
+				counts[run]++;
+				quads++;
+			}
+		}
+		
+		runTexture[chunk] = Arrays.copyOf(textures, runs);
+		runFirst[chunk] = new int [runs];
+		runCount[chunk] = new int [runs];
+		for (int run = 0, first = 0 ; run < runs ; run++)
+		{
+			runFirst[chunk][run] = first;
+			runCount[chunk][run] = counts[run] * 4;
+			first += counts[run] * 4;
+		}
+		if (quads == 0)
+			return;
+		
+		// The quads, relative to the map's bottom left corner
+		int [] next = new int [runs];
+		for (int run = 0 ; run < runs ; run++)
+			next[run] = runFirst[chunk][run] * VERTEX_FLOATS;
+		vertices.clear();
+		for (int row = row0, i = 0 ; row < row1 ; row++)
+		{
+			for (int col = col0 ; col < col1 ; col++, i++)
+			{
+				if (group[i] < 0)
+					continue;
+				
+				TextureCoords tc = tileCoords[tiles[row * columns + col]];
+				float x0 = col * tileW, y0 = row * tileH, x1 = x0 + tileW, y1 = y0 + tileH;
+				int v = next[group[i]];
+				v = vertex(v, x0, y0, tc.left(), tc.bottom());
+				v = vertex(v, x1, y0, tc.right(), tc.bottom());
+				v = vertex(v, x1, y1, tc.right(), tc.top());
+				next[group[i]] = vertex(v, x0, y1, tc.left(), tc.top());
+			}
+		}
+		vertices.position(0);
+		vertices.limit(quads * 4 * VERTEX_FLOATS);
+		
+		if (chunkBuffer[chunk] == 0)
+		{
+			gl.glGenBuffers(1, bufferId, 0);
+			chunkBuffer[chunk] = bufferId[0];
+		}
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, chunkBuffer[chunk]);
+		gl.glBufferData(GL.GL_ARRAY_BUFFER, quads * 4 * VERTEX_FLOATS * 4, vertices, GL.GL_STATIC_DRAW);
+	}
+	
+	private int vertex(int v, float x, float y, float u, float t)
+	{
+		vertices.put(v++, x);
+		vertices.put(v++, y);
+		vertices.put(v++, u);
+		vertices.put(v++, t);
+		return(v);
+	}
+}
@@ -0,0 +1,170 @@
+package GameEngine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Holds the most recent samples recorded by the game engine, usually times in nanoseconds such as how long each game tick took.
+ * <p>
+ * The samples are kept in a sliding window of a fixed size so the percentiles always describe recent behaviour. Only the game
+ * timer records samples but any thread may query them at any time without locking (the query simply sees the window as it was
+ * at that moment).
+ *
+ * @see GameTimerStats
+ */
+public class TimingHistogram
+{
+	private AtomicLongArray samples;
+	private AtomicLong count = new AtomicLong(0);
+	private AtomicLong total = new AtomicLong(0);
+	private AtomicLong maxEver = new AtomicLong(0);
+	
+	//==============================================================================
+	
+	/**
+	 * Constructor
+	 *
+	 * @param windowSize The number of recent samples to keep
+	 */
+	TimingHistogram(int windowSize)
+	{
+		samples = new AtomicLongArray(windowSize);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Records a sample. Only one thread may record into a histogram
+	 *
+	 * @param value The sample value in nanoseconds
+	 */
+	void record(long value)
+	{
+		long c = count.get();
+		samples.set((int)(c % samples.length()), value);
+		total.addAndGet(value);
+		if (value > maxEver.get())
+			maxEver.set(value);
+		count.set(c + 1);
+	}
+	
+	/**
+	 * Clears all the samples
+	 */
+	void reset()
+	{
+		count.set(0);
+		total.set(0);
+		maxEver.set(0);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Copies the samples currently in the window into a sorted array
+	 */
+	private long [] sortedWindow()
+	{
+		int n = (int)Math.min(count.get(), samples.length());
+		long [] copy = new long [n];
+		for (int i = 0 ; i < n ; i++)
+			copy[i] = samples.get(i);
+		Arrays.sort(copy);
+		return(copy);
+	}
+	
+	/**
+	 * Returns a percentile of the samples in the window
+	 *
+	 * @param percentile The percentile to return (between 0.0 and 100.0, e.g. 50.0 for the median or 99.0)
+	 * @return The sample value at that percentile in nanoseconds, 0 if there are no samples
+	 */
+	public long getPercentile(double percentile)
+	{
+		long [] sorted = sortedWindow();
+		if (sorted.length == 0)
+			return(0);
+		int index = (int)Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		return(sorted[Math.max(0, Math.min(sorted.length - 1, index))]);
+	}
+	
+	/**
+	 * Returns the largest sample in the window
+	 *
+	 * @return The largest sample in nanoseconds, 0 if there are no samples
+	 */
+	public long getMax()
+	{
+		long [] sorted = sortedWindow();
+		return(sorted.length == 0 ? 0 : sorted[sorted.length - 1]);
+	}
+	
+	/**
+	 * Returns the mean of the samples in the window
+	 *
+	 * @return The mean in nanoseconds, 0 if there are no samples
+	 */
+	public long getMean()
+	{
+		long [] sorted = sortedWindow();
+		if (sorted.length == 0)
+			return(0);
+		long sum = 0;
+		for (int i = 0 ; i < sorted.length ; i++)
+			sum += sorted[i];
+		return(sum / sorted.length);
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns the largest sample ever recorded (not just in the window)
+	 *
+	 * @return The largest sample in nanoseconds
+	 */
+	public long getMaxEver()
+	{
+		return(maxEver.get());
+	}
+	
+	/**
+	 * Returns the sum of all the samples ever recorded
+	 *
+	 * @return The total in nanoseconds
+	 */
+	public long getTotal()
+	{
+		return(total.get());
+	}
+	
+	/**
+	 * Returns the number of samples ever recorded (not just in the window)
+	 *
+	 * @return The number of samples
+	 */
+	public long getCount()
+	{
+		return(count.get());
+	}
+	
+	/**
+	 * Returns the number of recent samples the window holds
+	 *
+	 * @return The size of the window
+	 */
+	public int getWindowSize()
+	{
+		return(samples.length());
+	}
+	
+	//==============================================================================
+	
+	/**
+	 * Returns a short summary of the window (median, 99th percentile and max in milliseconds)
+	 */
+	public String toString()
+	{
+		return(String.format("p50=%.3fms p99=%.3fms max=%.3fms (n=%d)",
+				getPercentile(50.0) / 1000000.0, getPercentile(99.0) / 1000000.0, getMax() / 1000000.0, getCount()));
+	}
+}
@@ -85,8 +85,13 @@ public class AsteroidGame extends Game
                              (float)(background.getAABoundingBox().width)/2f,
                              (float)(background.getAABoundingBox().height)/2f,  100f);
         
+        // The 72 frames are packed into one atlas texture, so the ship never breaks the sprite batch
+        String [] shipFrames = new String [72];
         for (int i = 0 ; i < 72 ; i++) {
-            p.addTexture(loader.loadTexture("Textures/ship/spaceship_sm"+i+".gif"), 16, 16);
+            shipFrames[i] = "Textures/ship/spaceship_sm"+i+".gif";
+        }
+        for (GameTexture frame : loader.loadTextures(shipFrames)) {
+            p.addTexture(frame, 16, 16);
         }
         
         p.setSubImage(0,0,32, 32);
@@ -96,8 +101,8 @@ public class AsteroidGame extends Game
         
         // Adding 10 asteroids in random locations
         for (int i = 0 ; i < 10 ; i++) {
-            AsteroidObject ast = new AsteroidObject ((float)(Math.random()*background.getAABoundingBox().width), (float)(Math.random()*background.getAABoundingBox().height), 100.0f, astTex);
-            ast.applyForce((float)(Math.random())*100f - 50f,(float)(Math.random())*100f - 50f);
+            AsteroidObject ast = new AsteroidObject (getRandom().nextFloat()*background.getAABoundingBox().width, getRandom().nextFloat()*background.getAABoundingBox().height, 100.0f, astTex, getRandom());
+            ast.applyForce(getRandom().nextFloat()*100f - 50f, getRandom().nextFloat()*100f - 50f);
             
             objects.add(ast);
         }
@@ -197,9 +202,7 @@ public class AsteroidGame extends Game
         
         // NOTE: you must call doTimeStep for ALL game objects once per frame!
         // updateing step for each object
-        for (int i = 0 ; i < objects.size() ; i++) {
-            objects.elementAt(i).doTimeStep();
-        }
+        doTimeSteps(objects);
         
         //looping through all objects in the game
         for (int i = 0 ; i < objects.size() ; i++) {
@@ -244,10 +247,10 @@ public class AsteroidGame extends Game
                     // creating 2 smaller asteroids
                     if (scale != 2) {
                         for (int j = 0 ; j < 2 ; j++) {
-                            AsteroidObject ast = new AsteroidObject (objects.elementAt(i).getPosition().x, objects.elementAt(i).getPosition().y, 100.0f/scalef, halfAstTex);
+                            AsteroidObject ast = new AsteroidObject (objects.elementAt(i).getPosition().x, objects.elementAt(i).getPosition().y, 100.0f/scalef, halfAstTex, getRandom());
                             ast.setPictureScale(scale*2);
                             
-                            ast.applyForce((float)(Math.random())*100f - 50f,(float)(Math.random())*100f - 50f);
+                            ast.applyForce(getRandom().nextFloat()*100f - 50f, getRandom().nextFloat()*100f - 50f);
                             objects.add(ast);
                         }
                     }
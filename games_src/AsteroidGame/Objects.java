@@ -1,4 +1,5 @@
 import GameEngine.GameTexture;
+import java.util.Random;
 
 class PlayerObject extends PhysicalObject {
     
@@ -43,13 +44,14 @@ class AsteroidObject extends PhysicalObject {
 
     private int pictureScale = 1;
     
-    public AsteroidObject (float x, float y, float m, GameTexture gt) {
+    // The game's random number generator is used so that recorded sessions play back the same
+    public AsteroidObject (float x, float y, float m, GameTexture gt, Random random) {
         super (x, y, m);
         
         addTexture(gt, 0, 0);
-        picNum = (int)(Math.random()*100f)%8;
-        picRow = (int)(Math.random()*100f)%8;
-        picRow = (int)(Math.random()*100f)%5+3;
+        picNum = random.nextInt(100)%8;
+        picRow = random.nextInt(100)%8;
+        picRow = random.nextInt(100)%5+3;
     }
 
     public int getPictureScale() {
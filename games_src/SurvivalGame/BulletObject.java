@@ -1,14 +1,27 @@
 
 
+import GameEngine.GameObject;
 import GameEngine.GameTexture;
 
 public class BulletObject extends PhysicalObject {
     private int destroyTimer = 0;
+    private SurvivalGame game;
     
     public BulletObject (float x, float y, float m, int time, GameTexture bt) {
         super (x, y, m);
         setDestroyTimer(time);
         addTexture(bt);
+        setIndependentUpdate(true);
+        // Bullets are fast, sweep their motion so they can't skip through a wall between ticks
+        setContinuousCollision(true);
+    }
+    
+    /**
+     * Creates a bullet for a GameObjectPool, its position and destroy timer are set when it is fired
+     */
+    public BulletObject (GameTexture bt, SurvivalGame game) {
+        this (0, 0, 1f, 0, bt);
+        this.game = game;
     }
     
     public void setDestroyTimer(int time) {
@@ -22,4 +35,15 @@ public class BulletObject extends PhysicalObject {
         
         super.doTimeStep();
     }
+    
+    protected void onCollisionBegin(GameObject other) {
+        // Bullets fly past the player but stop at anything else (rocks blow themselves up)
+        if (other instanceof PlayerObject)
+            return;
+        
+        setMarkedForDestruction(true);
+        // Two bullets blow each other up
+        if (other instanceof BulletObject && game != null)
+            game.explosion(this, other);
+    }
 }
@@ -100,6 +100,15 @@ public class PhysicalObject extends GameObject {
 		velocity.y *= f;
 	}
     
+	/**
+	 * Stops the object when it is reused from a GameObjectPool
+	 */
+    protected void onAcquire()
+    {
+        velocity.x = 0;
+        velocity.y = 0;
+    }
+    
 	/**
 	 * Performs the time step operations for this object.
 	 * <p>
@@ -107,15 +116,12 @@ public class PhysicalObject extends GameObject {
 	 * <p>
 	 * i.e.
 	 * <p>
-     *  position.x += velocity.x;
-	 * <p>
-     *  position.y += velocity.y;
+     *  incrementPosition(velocity.x, velocity.y);
 	 * 
 	 */
     public void doTimeStep()
     {
-        position.x += velocity.x;
-        position.y += velocity.y;
+        incrementPosition(velocity.x, velocity.y);
         
         super.doTimeStep();
     }
@@ -27,7 +27,7 @@ class PlayerObject extends GameObject
         this.direction = direction;
         
         // Set the rotation to be the same as the direction value
-        rotation = direction;
+        setRotation(direction);
     }
     
     public void revertPosition ()
@@ -35,6 +35,17 @@ class PlayerObject extends GameObject
     	this.setPosition(oldPosition);
     }
     
+    // The player can not move into anything, so it is moved back every tick it touches something
+    protected void onCollisionBegin(GameObject other)
+    {
+    	revertPosition();
+    }
+    
+    protected void onCollisionStay(GameObject other)
+    {
+    	revertPosition();
+    }
+    
     public float getDirection()
     {
 		return direction;
@@ -43,7 +54,7 @@ class PlayerObject extends GameObject
 
 	public void moveInDirection(float direction)
 	{
-		oldPosition = this.getPosition();
+		getPosition(oldPosition);
 		incrementPosition((float)Math.sin(Math.toRadians(direction))*2, -(float)Math.cos(Math.toRadians(direction))*2);
 		setDirection(direction);
 	}
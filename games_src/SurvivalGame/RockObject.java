@@ -0,0 +1,26 @@
+
+
+import GameEngine.GameObject;
+
+/**
+ * A rock to shoot, it blows up when anything but the player hits it
+ */
+public class RockObject extends GameObject {
+    private SurvivalGame game;
+    
+    public RockObject(float x, float y, SurvivalGame game) {
+        super(x, y);
+        this.game = game;
+    }
+    
+    protected void onCollisionBegin(GameObject other) {
+        // The player just bumps into rocks
+        if (other instanceof PlayerObject)
+            return;
+        
+        // Anything else goes up with the rock, walls included
+        setMarkedForDestruction(true);
+        other.setMarkedForDestruction(true);
+        game.explosion(this, other);
+    }
+}
@@ -1,14 +1,20 @@
 
 
-import java.util.Vector;
 import java.awt.geom.*;
 import java.awt.event.*;
 import java.awt.*;
 
+import GameEngine.AABBTree;
+import GameEngine.CollisionStage;
 import GameEngine.Game;
 import GameEngine.GameTexture;
 import GameEngine.GameFont;
+import GameEngine.GameNarrowphase;
 import GameEngine.GameObject;
+import GameEngine.GameObjectFactory;
+import GameEngine.GameObjectPool;
+import GameEngine.GameWorld;
+import GameEngine.TileMap;
 
 
 //==================================================================================================
@@ -22,10 +28,10 @@ public class SurvivalGame extends Game
     private boolean alive = true;
     
     // A Collection of GameObjects in the world that will be used with the collision detection system
-    private Vector<GameObject> objects = new Vector<GameObject>();
+    private GameWorld objects = new GameWorld();
     
-    // Grid GameObjects
-    private GameObject [] [] gridTile;
+    // The floor, a grid of grass tiles
+    private TileMap floor;
     
     // The cooldown of the gun (set this to 0 for a cool effect :> )
     private int cooldown = 10;
@@ -37,6 +43,9 @@ public class SurvivalGame extends Game
     //Textures that will be used
     private GameTexture bulletTexture;
     
+    // Fired bullets are reused rather than created for every shot
+    private GameObjectPool<BulletObject> bullets;
+    
     //GameFonts that will be used
     private GameFont arial, serif;
     
@@ -46,6 +55,27 @@ public class SurvivalGame extends Game
     // a counter for how far the mousewheel has been moved (just an example)
     private int mouseWheelTick = 0;
     
+    // The collision categories, walls never collide with each other
+    static final int WALL = 1, BULLET = 2, ROCK = 4, PLAYER = 8;
+    
+    // The collision detection only compares objects that are near each other (the walls are static so cost nothing)
+    private AABBTree broadphase = new AABBTree(8);
+    
+    // Reused by the collision detection so it does not create rectangles every tick
+    private Rectangle2D.Float box1 = new Rectangle2D.Float(), box2 = new Rectangle2D.Float();
+    
+    // The last pair that blew up, so a pair telling explosion() twice only blows up once
+    private GameObject exploded1, exploded2;
+    
+    // Tells the objects when they hit each other (see onCollisionBegin() in the objects), the original corner test is kept
+    private CollisionStage collisions = new CollisionStage(broadphase, new GameNarrowphase()
+    {
+        public boolean collides(GameObject o1, GameObject o2)
+        {
+            return(boxIntersectBox(o1.getAABoundingBox(box1), o2.getAABoundingBox(box2)));
+        }
+    });
+    
     // Information for the random line at the bottom of the screen
     Point2D.Float [] linePositions = {new Point2D.Float(0,0), new Point2D.Float(100,100)};
     float [][] lineColours = {{1.0f,1.0f,1.0f,1.0f},{1.0f,0.0f,0.0f,1.0f}};
@@ -99,8 +129,8 @@ public class SurvivalGame extends Game
     	// Add the Audio paths
 		for (int i = 0; i < AudioPaths.length; i++)
 			gameAudio.AddNewAudioFile(AudioPaths[i]);
-		// Initialise the audio engine
-		gameAudio.Initialise();
+		// Initialise the audio engine (in the background so the game can start straight away)
+		gameAudio.InitialiseInBackground(this);
 		
         // Loading up some fonts
         arial = loader.loadFont(new Font("Arial", Font.ITALIC, 48));
@@ -114,6 +144,17 @@ public class SurvivalGame extends Game
         GameTexture grassTexture = loader.loadTexture("Textures/grass_tile.jpg");
         bulletTexture = loader.loadTexture("Textures/bullet.png");
         
+        // The bullet pool, destroyed bullets are given back to it by objects.removeDestroyed()
+        bullets = new GameObjectPool<BulletObject>(new GameObjectFactory<BulletObject>()
+        {
+            public BulletObject create()
+            {
+                BulletObject b = new BulletObject(bulletTexture, SurvivalGame.this);
+                b.setCollisionFilter(BULLET, ~0);
+                return(b);
+            }
+        }, 256);
+        
         
         // Setup the world grid system
         int gridSize = 16;
@@ -125,15 +166,19 @@ public class SurvivalGame extends Game
         // Creating some random rocks to shoot
         for (int i = 0 ; i < 8 ; i++)
         {
-        	float x = (float) ((Math.random()*(gridSize-4)+2)*grassTexture.getWidth());
-      		float y = (float) ((Math.random()*(gridSize-4)+2)*grassTexture.getHeight());
+        	float x = (float) ((getRandom().nextFloat()*(gridSize-4)+2)*grassTexture.getWidth());
+      		float y = (float) ((getRandom().nextFloat()*(gridSize-4)+2)*grassTexture.getHeight());
           
-			GameObject go = new GameObject(x, y);
+			RockObject go = new RockObject(x, y, this);
 			go.addSpriteSheet(softRockTexture, 64, 64);
-			go.setSpriteSheetCol((int)(Math.random()*8));
-			go.setSpriteSheetRow((int)(Math.random()*8));
+			go.setSpriteSheetCol(getRandom().nextInt(8));
+			go.setSpriteSheetRow(getRandom().nextInt(8));
 			go.setupAnimation(true, true);
+			// The rocks only animate themselves so they can be updated in parallel
+			go.setIndependentUpdate(true);
+			go.setCollisionFilter(ROCK, ~0);
 			objects.add(go);
+			broadphase.add(go);
         }
         
         // Add the special item
@@ -161,16 +206,10 @@ public class SurvivalGame extends Game
         objects.add(goSpec4);
         
         
-        // creating the floor objects
-        gridTile = new GameObject[gridSize][gridSize];
-        for (int i = 0 ; i < gridSize ; i++)
-        {
-        	for (int j = 0 ; j < gridSize ; j++)
-        	{
-        		gridTile[i][j] = new GameObject(grassTexture.getWidth() * i, grassTexture.getHeight() * j);
-        		gridTile[i][j].addTexture(grassTexture, 0, 0);
-            }
-        }
+        // creating the floor, every tile is grass (tile id 0)
+        floor = new TileMap(gridSize, gridSize, grassTexture.getWidth(), grassTexture.getHeight());
+        floor.setTileTexture(0, grassTexture);
+        floor.fill(0);
         
         
         // Creating wall objects
@@ -178,21 +217,21 @@ public class SurvivalGame extends Game
         {
     		WallObject go = new WallObject(i, 0);
     		go.addTexture(rockTexture, 0, 0);
-    		objects.add(go);
+    		addWall(go);
     		
     		go = new WallObject(i, grassTexture.getHeight()*(gridSize-1));
     		go.addTexture(rockTexture, 0, 0);
-    		objects.add(go);
+    		addWall(go);
         }
         for (int i = grassTexture.getHeight() ; i < grassTexture.getHeight()*(gridSize-1) ; i += rockTexture.getHeight())
         {
     		WallObject go = new WallObject(0, i);
     		go.addTexture(rockTexture, 0, 0);
-    		objects.add(go);
+    		addWall(go);
     		
     		go = new WallObject(rockTexture.getWidth()*(gridSize-1), i);
     		go.addTexture(rockTexture, 0, 0);
-    		objects.add(go);
+    		addWall(go);
         }
         
         // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
@@ -203,28 +242,39 @@ public class SurvivalGame extends Game
                              (float)(grassTexture.getHeight()*gridSize)/2f);
         
         player.addTexture(loader.loadTexture("Textures/spaceship_sm.gif"), 16, 16);
+        player.setCollisionFilter(PLAYER, ~0);
         
         objects.add(player);
+        broadphase.add(player);
 
         // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
     }
 
     //==================================================================================================
     
+    // this method is used to add a wall, walls never move so they go into the static part of the broadphase
+    private void addWall(WallObject go)
+    {
+        go.setCollisionFilter(WALL, ~WALL);
+        objects.add(go);
+        broadphase.addStatic(go);
+    }
+    
     // this method is used to fire a bullet 
     public void fireBullet()
     {
         cooldownTimer = cooldown;
         
         float dir = 90+player.getDegreesTo(mousePos);
-        BulletObject bullet =
-                new BulletObject(
-                         player.getPosition().x + (float)Math.sin(Math.toRadians(dir))*32, player.getPosition().y - (float)Math.cos(Math.toRadians(dir))*32, 1f, 300, bulletTexture);
+        BulletObject bullet = bullets.acquire();
+        bullet.setPosition(player.getX() + (float)Math.sin(Math.toRadians(dir))*32, player.getY() - (float)Math.cos(Math.toRadians(dir))*32);
+        bullet.setDestroyTimer(300);
         
         //bullet.setVelocity(player.getVelocity());
         bullet.applyForceInDirection(dir, 6f);
         
         objects.add(bullet);
+        broadphase.add(bullet);
         
         // Play the laser sound
         gameAudio.PlayAudioIndex(AudioFiles.Laser.index);
@@ -236,16 +286,17 @@ public class SurvivalGame extends Game
     }
     
     // This is a pretty bad implementation and faster ones exist, it is suggested you find a better one. At least try make use of the Rectangle2D's createIntersection method.
+    // (The corners are tested directly so that the O(n^2) collision loop creates no garbage)
     public static boolean boxIntersectBox (final Rectangle2D.Float d, final Rectangle2D.Float d2)
     {
-        return  isPointInBox(new Point2D.Float (d.x, d.y), d2) ||
-                isPointInBox(new Point2D.Float (d.x, d.y+d.height), d2) ||
-                isPointInBox(new Point2D.Float (d.x+d.width, d.y), d2) ||
-                isPointInBox(new Point2D.Float (d.x+d.width, d.y+d.height), d2) ||
-                isPointInBox(new Point2D.Float (d2.x, d2.y), d) ||
-                isPointInBox(new Point2D.Float (d2.x, d2.y+d2.height), d) ||
-                isPointInBox(new Point2D.Float (d2.x+d2.width, d2.y), d) ||
-                isPointInBox(new Point2D.Float (d2.x+d2.width, d2.y+d2.height), d);
+        return  d2.contains(d.x, d.y) ||
+                d2.contains(d.x, d.y+d.height) ||
+                d2.contains(d.x+d.width, d.y) ||
+                d2.contains(d.x+d.width, d.y+d.height) ||
+                d.contains(d2.x, d2.y) ||
+                d.contains(d2.x, d2.y+d2.height) ||
+                d.contains(d2.x+d2.width, d2.y) ||
+                d.contains(d2.x+d2.width, d2.y+d2.height);
     }
     
     private void handleControls(GameInputInterface gii)
@@ -317,15 +368,12 @@ public class SurvivalGame extends Game
         }
         
         // NOTE: you must call doTimeStep for ALL game objects once per frame!
-        // updateing step for each object
-        for (int i = 0 ; i < objects.size() ; i++)
-        {
-            objects.elementAt(i).doTimeStep();
-        }
+        // updateing step for each object (the bullets and rocks are updated in parallel)
+        doTimeSteps(objects);
         
         // setting the camera offset
-        offset.x = -player.getPosition().x + (this.getViewportDimension().width/2);
-        offset.y = -player.getPosition().y + (this.getViewportDimension().height/2);
+        offset.x = -player.getX() + (this.getViewportDimension().width/2);
+        offset.y = -player.getY() + (this.getViewportDimension().height/2);
         
         // Code to prevent the camera moving past the background image
         if (offset.x > 0)
@@ -342,78 +390,49 @@ public class SurvivalGame extends Game
     // COLLISION DETECTION CODE!
     //**************************
         
-        //checking each unit against each other unit for collisions
-        for (int i = 0 ; i < objects.size() ; i++)
-        {
-        	GameObject o1 = objects.elementAt(i);
-        	// If this item is marked as not collidable then skip it
-        	if (!o1.getCollidable())
-        		continue;
-        	
-            for (int j = i+1 ; j < objects.size() ; j++)
-            {
-            	GameObject o2 = objects.elementAt(j);
-            	// If this item is marked as not collidable then skip it
-            	if (!o2.getCollidable())
-            		continue;
-            	
-                if (boxIntersectBox(o1.getAABoundingBox(), o2.getAABoundingBox()))
-                {
-                	if (o1 instanceof WallObject && o2 instanceof WallObject)
-                	{
-                		// Skip wall vs wall objects
-                	}
-                	else if ((o1 instanceof BulletObject && o2 instanceof WallObject) || o1 instanceof WallObject && o2 instanceof BulletObject)
-                	{
-                		// Just destroy the bullet, not the wall
-                		if (o1 instanceof BulletObject)
-                    		o1.setMarkedForDestruction(true);
-                		else
-                    		o2.setMarkedForDestruction(true);
-                	}
-                	else if (o1 instanceof PlayerObject || o2 instanceof PlayerObject)
-                	{
-                		player.revertPosition();
-                	}
-                	else
-                	{
-                		System.out.println("Removing objects "+i +":"+j);
-                		o1.setMarkedForDestruction(true);
-                		o2.setMarkedForDestruction(true);
-                		
-                		// Play the explosion sound as something blew up (EXAMPLE)
-                        gameAudio.PlayAudioIndex(AudioFiles.Explosion.index);
-                		
-                		// Note: you can also implement something like o1.reduceHealth(5); if you don't want the object to be immediatly destroyed
-                	}
-                }
-            }
-        }
+        // checking each unit against the units near it for collisions, the objects handle the hits themselves
+        collisions.step();
+        exploded1 = exploded2 = null;
         
     //**************************        
     //**************************
         
         // destroying units that need to be destroyed
-        for (int i = 0 ; i < objects.size() ; i++)
+        if (player != null && player.isMarkedForDestruction())
         {
-            if (objects.elementAt(i).isMarkedForDestruction())
-            {
-            	if (objects.elementAt(i) == player)
-            	{
-                    alive = false;
-                    player = null;
-                }
-                // removing object from list of GameObjects
-                objects.remove(i);
-                i--;
-            }
+            alive = false;
+            player = null;
         }
+        // removing them all from the world in one go
+        objects.removeDestroyed();
     }
 
     
     //==================================================================================================
     
     
+    /**
+     * Called by an object when a hit blows it up. Both objects of the pair may call it, one straight after the other (see
+     * CollisionStage), but there is only one explosion
+     */
+    void explosion(GameObject o1, GameObject o2)
+    {
+        if (o1 == exploded2 && o2 == exploded1)
+            return;
+        exploded1 = o1;
+        exploded2 = o2;
+        
+        System.out.println("Removing objects");
+        
+        // Play the explosion sound as something blew up (EXAMPLE)
+        gameAudio.PlayAudioIndex(AudioFiles.Explosion.index);
+        
+        // Note: you can also implement something like o1.reduceHealth(5); if you don't want the object to be immediatly destroyed
+    }
+    
+    //==================================================================================================
+    
+    
     public void renderStep(GameDrawer drawer)
     {
     	//For every object that you want to be rendered, you must call the draw function with it as a parameter
@@ -425,18 +444,12 @@ public class SurvivalGame extends Game
         drawer.setColour(1.0f, 1.0f, 1.0f, 1.0f);
 
         // drawing the ground tiles
-        for (int i = 0 ; i < gridTile.length ; i++ )
-        {
-        	for (int j = 0 ; j < gridTile[i].length ; j++ )
-        	{
-        		drawer.draw(gridTile[i][j], -1);
-        	}
-        }
+        drawer.draw(floor, -1);
         
         // Drawing all the objects in the game
-        for (GameObject o: objects)
+        for (int i = 0 ; i < objects.size() ; i++)
         {
-        	drawer.draw(o, 1.0f, 1.0f, 1.0f, 1.0f, 0);
+        	drawer.draw(objects.get(i), 1.0f, 1.0f, 1.0f, 1.0f, 0);
         }
         
 